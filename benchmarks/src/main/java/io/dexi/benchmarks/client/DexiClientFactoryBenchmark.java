@@ -0,0 +1,123 @@
+package io.dexi.benchmarks.client;
+
+import io.dexi.client.DexiAuth;
+import io.dexi.client.DexiClientException;
+import io.dexi.client.DexiClientFactory;
+import io.dexi.service.DexiPayloadHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link DexiClientFactory} calls made for every request an app handles - binding the configuration header,
+ * getting clients and activation configuration. Misses use a new activation id every time, and call a local stub
+ * server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DexiClientFactoryBenchmark {
+
+    private static final String CONFIGURATION = "{\"name\":\"benchmark\",\"limit\":100,\"enabled\":true," +
+            "\"fields\":[\"name\",\"email\",\"phone\"],\"target\":{\"type\":\"dataset\",\"id\":\"4b0c6d2e\"}}";
+
+    private final AtomicLong activations = new AtomicLong();
+
+    private StubDexiServer server;
+
+    private DexiClientFactory clientFactory;
+
+    private DexiClientFactory.HttpRequest request;
+
+    private DexiClientFactory.HttpRequest[] distinctRequests;
+
+    @Setup
+    public void setup() throws IOException, DexiClientException {
+        server = new StubDexiServer();
+        clientFactory = new DexiClientFactory(server.getBaseUrl(), DexiAuth.from("account", "api-key"));
+
+        request = headerName -> DexiPayloadHeaders.CONFIGURATION.equals(headerName) ? CONFIGURATION : null;
+
+        // More distinct headers than the factory caches
+        distinctRequests = new DexiClientFactory.HttpRequest[1024];
+        for (int i = 0; i < distinctRequests.length; i++) {
+            final String json = CONFIGURATION.replace("\"limit\":100", "\"limit\":" + i);
+            distinctRequests[i] = headerName -> DexiPayloadHeaders.CONFIGURATION.equals(headerName) ? json : null;
+        }
+
+        clientFactory.create("activation");
+        clientFactory.getActivationConfig("activation", Config.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    private String nextActivation() {
+        return "activation-" + activations.incrementAndGet();
+    }
+
+    @Benchmark
+    public Config getConfiguration_repeated() throws IOException {
+        return clientFactory.getConfiguration(request, Config.class);
+    }
+
+    @Benchmark
+    public Config getConfiguration_distinct() throws IOException {
+        final int index = (int) (activations.incrementAndGet() & (distinctRequests.length - 1));
+        return clientFactory.getConfiguration(distinctRequests[index], Config.class);
+    }
+
+    @Benchmark
+    public DexiClientFactory.DexiClient create_hit() {
+        return clientFactory.create("activation");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public DexiClientFactory.DexiClient create_miss() {
+        return clientFactory.create(nextActivation());
+    }
+
+    @Benchmark
+    public Config getActivationConfig_hit() throws DexiClientException {
+        return clientFactory.getActivationConfig("activation", Config.class);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Config getActivationConfig_miss() throws DexiClientException {
+        return clientFactory.getActivationConfig(nextActivation(), Config.class);
+    }
+
+    public static class Config {
+
+        public String name;
+
+        public int limit;
+
+        public boolean enabled;
+
+        public List<String> fields;
+
+        public Map<String, String> target;
+    }
+}
@@ -0,0 +1,81 @@
+package io.dexi.benchmarks.client;
+
+import io.dexi.client.DexiAuth;
+import io.dexi.client.DexiClientFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import retrofit2.Call;
+import retrofit2.Response;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start - the time from creating a {@link DexiClientFactory} in a fresh JVM to the first successful call.
+ *
+ * Every fork measures a single call, so class loading and initialization are included. Compares the built-in client
+ * with the same endpoint called through a Retrofit proxy. Use {@code -f <forks>} for more samples.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class DexiClientStartupBenchmark {
+
+    private StubDexiServer server;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new StubDexiServer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    private DexiClientFactory.DexiClient newClient() {
+        return new DexiClientFactory(server.getBaseUrl(), DexiAuth.from("account", "api-key"))
+                .create("activation");
+    }
+
+    @Benchmark
+    public Map<?, ?> firstCall_builtIn() throws IOException {
+        return newClient().apps().getActivationConfig(Map.class);
+    }
+
+    @Benchmark
+    public Map<String, Object> firstCall_retrofit() throws IOException {
+        final Response<Map<String, Object>> response = newClient().create(ActivationRestClient.class)
+                .getActivationConfig("activation")
+                .execute();
+
+        if (!response.isSuccessful()) {
+            throw new IOException("Failed to get activation config, status: " + response.code());
+        }
+
+        return response.body();
+    }
+
+    /**
+     * The activation configuration endpoint as a typed Retrofit interface
+     */
+    public interface ActivationRestClient {
+        @GET("apps/support/activations/{activationId}/configuration")
+        Call<Map<String, Object>> getActivationConfig(@Path("activationId") String activationId);
+    }
+}
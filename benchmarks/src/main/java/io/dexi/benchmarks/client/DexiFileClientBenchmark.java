@@ -0,0 +1,80 @@
+package io.dexi.benchmarks.client;
+
+import io.dexi.client.DexiAuth;
+import io.dexi.client.DexiClientFactory;
+import io.dexi.client.DexiFileClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File pointer handling - detecting pointers in row values, and parsing one and opening the file from a local stub
+ * server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DexiFileClientBenchmark {
+
+    private static final String POINTER = "FILE:image/png;" + StubDexiServer.FILE_SIZE + ";5f1c0e3a-8c2f-4a7e-9b1d-2a6c4e8f0b13";
+
+    private static final String PLAIN_VALUE = "https://example.com/some/page?with=query&and=more";
+
+    private StubDexiServer server;
+
+    private DexiFileClient fileClient;
+
+    private final byte[] buffer = new byte[8192];
+
+    @Setup
+    public void setup() throws IOException {
+        server = new StubDexiServer();
+        fileClient = new DexiClientFactory(server.getBaseUrl(), DexiAuth.from("account", "api-key"))
+                .create("activation")
+                .files();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public boolean isFileFieldValue_pointer() {
+        return DexiFileClient.isFileFieldValue(POINTER);
+    }
+
+    @Benchmark
+    public boolean isFileFieldValue_plain() {
+        return DexiFileClient.isFileFieldValue(PLAIN_VALUE);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long getFileFromFieldValue() throws IOException {
+        long read = 0;
+        try (DexiFileClient.FileHandle file = fileClient.getFileFromFieldValue(POINTER)) {
+            final InputStream stream = file.getStream();
+            int count;
+            while ((count = stream.read(buffer)) != -1) {
+                read += count;
+            }
+        }
+        return read;
+    }
+}
@@ -0,0 +1,214 @@
+package io.dexi.benchmarks.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the dexi endpoints used by the SDK clients - so client benchmarks measure the client, not the
+ * network.
+ *
+ * Serves the activation configuration and file downloads, plus any JSON routes added with
+ * {@link #addRoute(String, String)} for services created with {@code DexiClient.create}. Faults - latency, errors,
+ * throttling and truncated bodies - can be switched on and off while the server is running.
+ */
+public class StubDexiServer implements AutoCloseable {
+
+    public static final String ACTIVATION_CONFIG = "{\"name\":\"benchmark\",\"enabled\":true,\"limit\":100}";
+
+    public static final int FILE_SIZE = 64 * 1024;
+
+    static {
+        // Headers and body are written separately - without this, Nagle's algorithm and delayed ACKs add ~40ms per call
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final Map<String, byte[]> routes = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong faults = new AtomicLong();
+
+    private volatile long latencyMillis;
+
+    private volatile long latencyJitterMillis;
+
+    private volatile double errorRate;
+
+    private volatile double throttleRate;
+
+    private volatile double truncateRate;
+
+    public StubDexiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+
+        // Unbounded - with latency injected, a bounded pool would make the stub the bottleneck
+        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("stub-dexi-%d")
+                .setDaemon(true)
+                .build());
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Respond to GET and POST requests for a path - relative to the base url - with a JSON body
+     */
+    public StubDexiServer addRoute(String path, String json) {
+        routes.put("/" + path, json.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    /**
+     * Delay every response by {@code millis}, plus a random amount up to {@code jitterMillis}
+     */
+    public StubDexiServer setLatency(long millis, long jitterMillis) {
+        this.latencyMillis = millis;
+        this.latencyJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * The share of requests answered with 500 Internal Server Error
+     */
+    public StubDexiServer setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * The share of requests answered with 429 Too Many Requests
+     */
+    public StubDexiServer setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+        return this;
+    }
+
+    /**
+     * The share of responses whose connection is closed halfway through the body
+     */
+    public StubDexiServer setTruncateRate(double truncateRate) {
+        this.truncateRate = truncateRate;
+        return this;
+    }
+
+    /**
+     * Switch off all faults
+     */
+    public StubDexiServer reset() {
+        return setLatency(0, 0).setErrorRate(0).setThrottleRate(0).setTruncateRate(0);
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getFaultCount() {
+        return faults.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+
+        try {
+            exchange.getRequestBody().close();
+            delay();
+
+            final byte[] body = route(exchange.getRequestURI().getPath());
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            final double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < errorRate) {
+                faults.incrementAndGet();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            if (roll < errorRate + throttleRate) {
+                faults.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(429, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+
+            if (roll < errorRate + throttleRate + truncateRate) {
+                faults.incrementAndGet();
+                exchange.getResponseBody().write(body, 0, body.length / 2);
+                exchange.getResponseBody().flush();
+                // Closing with less than the announced length written drops the connection
+                return;
+            }
+
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] route(String path) {
+        final byte[] custom = routes.get(path);
+        if (custom != null) {
+            return custom;
+        }
+
+        if (!path.startsWith("/apps/support/activations/")) {
+            return null;
+        }
+
+        if (path.endsWith("/configuration")) {
+            return ACTIVATION_CONFIG.getBytes(StandardCharsets.UTF_8);
+        }
+
+        if (path.endsWith("/file")) {
+            return new byte[FILE_SIZE];
+        }
+
+        return null;
+    }
+
+    private void delay() {
+        long millis = latencyMillis;
+        if (latencyJitterMillis > 0) {
+            millis += ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1);
+        }
+
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
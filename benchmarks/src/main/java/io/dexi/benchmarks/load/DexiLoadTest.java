@@ -0,0 +1,251 @@
+package io.dexi.benchmarks.load;
+
+import io.dexi.benchmarks.client.StubDexiServer;
+import io.dexi.client.DexiAuth;
+import io.dexi.client.DexiClientFactory;
+import io.dexi.client.DexiFileClient;
+import retrofit2.Call;
+import retrofit2.Response;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a {@link DexiClientFactory} from many concurrent activations against a {@link StubDexiServer} - and reports
+ * throughput and latency percentiles.
+ *
+ * Run it from the benchmark jar:
+ * <pre>
+ *     java -cp target/benchmarks.jar io.dexi.benchmarks.load.DexiLoadTest --activations=64 --duration=30 \
+ *          --operation=mixed --latency=20 --jitter=10 --errors=0.01 --throttle=0.01 --truncate=0.01
+ * </pre>
+ *
+ * Every activation runs on its own thread, calling the stub back to back. Operations are {@code config} (activation
+ * configuration), {@code file} (file download), {@code service} (a service from {@code DexiClient.create}) and
+ * {@code mixed}. Use {@code --max-requests} to change the factory's limit of concurrent requests.
+ */
+public class DexiLoadTest {
+
+    private static final String FILE_POINTER = "FILE:application/octet-stream;" + StubDexiServer.FILE_SIZE + ";load-test-file";
+
+    private final Map<String, String> options;
+
+    private DexiLoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Options are --name=value - see the class documentation");
+                System.exit(1);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        new DexiLoadTest(options).run();
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.containsKey(name) ? options.get(name) : defaultValue;
+    }
+
+    private void run() throws Exception {
+        final int activations = Integer.parseInt(option("activations", "16"));
+        final long warmupSeconds = Long.parseLong(option("warmup", "5"));
+        final long durationSeconds = Long.parseLong(option("duration", "20"));
+        final String operation = option("operation", "config");
+
+        try (StubDexiServer server = new StubDexiServer()) {
+            server.addRoute("load-test/service", "{\"status\":\"ok\",\"items\":[1,2,3]}");
+
+            final DexiClientFactory clientFactory = new DexiClientFactory(server.getBaseUrl(), DexiAuth.from("load-test", "api-key"));
+            if (options.containsKey("max-requests")) {
+                clientFactory.setMaxConcurrentRequests(Integer.parseInt(options.get("max-requests")));
+            }
+
+            System.out.printf("%d activations, operation: %s%n", activations, operation);
+
+            // Warm up without faults - so the measurement is not dominated by class loading and JIT
+            measure(clientFactory, activations, operation, warmupSeconds);
+
+            server.setLatency(Long.parseLong(option("latency", "0")), Long.parseLong(option("jitter", "0")))
+                    .setErrorRate(Double.parseDouble(option("errors", "0")))
+                    .setThrottleRate(Double.parseDouble(option("throttle", "0")))
+                    .setTruncateRate(Double.parseDouble(option("truncate", "0")));
+
+            final long faultsBefore = server.getFaultCount();
+            final Result result = measure(clientFactory, activations, operation, durationSeconds);
+
+            result.print(durationSeconds, server.getFaultCount() - faultsBefore);
+        }
+    }
+
+    private Result measure(DexiClientFactory clientFactory, int activations, String operation, long seconds) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final Worker[] workers = new Worker[activations];
+        final CountDownLatch done = new CountDownLatch(activations);
+
+        for (int i = 0; i < activations; i++) {
+            workers[i] = new Worker(clientFactory.create("load-test-activation-" + i), operation, deadline, done);
+            final Thread thread = new Thread(workers[i], "load-test-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        done.await();
+
+        final Result result = new Result();
+        for (Worker worker : workers) {
+            result.add(worker);
+        }
+        return result;
+    }
+
+    /**
+     * A service created with {@code DexiClient.create} - served by a stub route
+     */
+    public interface LoadTestService {
+        @GET("load-test/{name}")
+        Call<Map<String, Object>> get(@Path("name") String name);
+    }
+
+    private static final class Worker implements Runnable {
+
+        private final DexiClientFactory.DexiClient client;
+
+        private final LoadTestService service;
+
+        private final String operation;
+
+        private final long deadline;
+
+        private final CountDownLatch done;
+
+        private final byte[] buffer = new byte[8192];
+
+        private long[] latencies = new long[1024];
+
+        private int count;
+
+        private long failures;
+
+        private Worker(DexiClientFactory.DexiClient client, String operation, long deadline, CountDownLatch done) {
+            this.client = client;
+            this.service = client.create(LoadTestService.class);
+            this.operation = operation;
+            this.deadline = deadline;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long start;
+                while ((start = System.nanoTime()) < deadline) {
+                    boolean success;
+                    try {
+                        success = call();
+                    } catch (IOException | RuntimeException e) {
+                        success = false;
+                    }
+
+                    record(System.nanoTime() - start, success);
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private boolean call() throws IOException {
+            String current = operation;
+            if ("mixed".equals(current)) {
+                final int roll = ThreadLocalRandom.current().nextInt(3);
+                current = roll == 0 ? "config" : roll == 1 ? "file" : "service";
+            }
+
+            switch (current) {
+                case "config":
+                    return client.apps().getActivationConfig(Map.class) != null;
+                case "file":
+                    return readFile();
+                case "service":
+                    final Response<Map<String, Object>> response = service.get("service").execute();
+                    return response.isSuccessful() && response.body() != null;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+        }
+
+        private boolean readFile() throws IOException {
+            try (DexiFileClient.FileHandle file = client.files().getFileFromFieldValue(FILE_POINTER)) {
+                if (file == null) {
+                    return false;
+                }
+
+                final InputStream stream = file.getStream();
+                long read = 0;
+                int bytes;
+                while ((bytes = stream.read(buffer)) != -1) {
+                    read += bytes;
+                }
+                return read == StubDexiServer.FILE_SIZE;
+            }
+        }
+
+        private void record(long nanos, boolean success) {
+            if (!success) {
+                failures++;
+            }
+
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+    }
+
+    private static final class Result {
+
+        private long[] latencies = new long[0];
+
+        private long failures;
+
+        private void add(Worker worker) {
+            final int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + worker.count);
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+            failures += worker.failures;
+        }
+
+        private void print(long seconds, long injectedFaults) {
+            Arrays.sort(latencies);
+
+            System.out.printf(Locale.ROOT, "Calls: %d, failed: %d, faults injected: %d%n", latencies.length, failures, injectedFaults);
+            System.out.printf(Locale.ROOT, "Throughput: %.1f calls/s%n", latencies.length / (double) seconds);
+
+            if (latencies.length == 0) {
+                return;
+            }
+
+            System.out.printf(Locale.ROOT, "Latency (ms): p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n",
+                    percentile(50), percentile(90), percentile(99), percentile(99.9),
+                    latencies[latencies.length - 1] / 1e6);
+        }
+
+        private double percentile(double percentile) {
+            final int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1e6;
+        }
+    }
+}
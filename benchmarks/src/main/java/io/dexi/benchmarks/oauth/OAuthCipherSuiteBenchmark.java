@@ -0,0 +1,77 @@
+package io.dexi.benchmarks.oauth;
+
+import io.dexi.oauth.EncryptedOAuthTokens;
+import io.dexi.oauth.OAuth2Tokens;
+import io.dexi.oauth.OAuthCipherSuite;
+import io.dexi.oauth.OAuthEncryptionService;
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-token cost of each cipher suite, compared to the legacy AES/ECB payloads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OAuthCipherSuiteBenchmark {
+
+    private static final String KEY = "0123456789abcdef0123456789abcdef";
+
+    @Param({"AES_GCM", "CHACHA20_POLY1305", "LEGACY_ECB"})
+    public String suite;
+
+    private OAuthEncryptionService service;
+
+    private OAuth2Tokens tokens;
+
+    private EncryptedOAuthTokens encrypted;
+
+    @Setup
+    public void setup() throws Exception {
+        tokens = new OAuth2Tokens();
+        tokens.setAccessToken("ya29.a0AfH6SMBx3kQ1example-access-token-value-with-some-length");
+        tokens.setRefreshToken("1//0gexample-refresh-token-value");
+
+        if ("LEGACY_ECB".equals(suite)) {
+            service = new OAuthEncryptionService(KEY);
+
+            final Cipher cipher = Cipher.getInstance("AES");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "AES"));
+
+            final String plaintext = tokens.getAccessToken() + ":" + tokens.getRefreshToken();
+            encrypted = new EncryptedOAuthTokens(tokens);
+            encrypted.setPayload(Base64.encodeBase64String(cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8))));
+        } else {
+            service = new OAuthEncryptionService(KEY, OAuthCipherSuite.valueOf(suite));
+            encrypted = service.encrypt(tokens);
+        }
+    }
+
+    @Benchmark
+    public EncryptedOAuthTokens encrypt() {
+        return service.encrypt(tokens);
+    }
+
+    @Benchmark
+    public OAuth2Tokens decrypt() {
+        return service.decrypt(encrypted);
+    }
+}
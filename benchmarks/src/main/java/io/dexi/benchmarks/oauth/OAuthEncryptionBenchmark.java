@@ -0,0 +1,105 @@
+package io.dexi.benchmarks.oauth;
+
+import io.dexi.oauth.EncryptedOAuthTokens;
+import io.dexi.oauth.OAuth2Tokens;
+import io.dexi.oauth.OAuthEncryptionService;
+import io.dexi.oauth.OAuthTokenCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypt / decrypt throughput of a single shared {@link OAuthEncryptionService}.
+ *
+ * The fixed thread counts cover the common cases - use {@code -t <threads>} to measure any other level of contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OAuthEncryptionBenchmark {
+
+    private OAuthEncryptionService service;
+
+    private OAuthEncryptionService cachingService;
+
+    private OAuth2Tokens tokens;
+
+    private EncryptedOAuthTokens encrypted;
+
+    @Setup
+    public void setup() {
+        service = new OAuthEncryptionService("0123456789abcdef0123456789abcdef");
+
+        tokens = new OAuth2Tokens();
+        tokens.setAccessToken("ya29.a0AfH6SMBx3kQ1example-access-token-value-with-some-length");
+        tokens.setRefreshToken("1//0gexample-refresh-token-value");
+        tokens.setExpiresInSeconds(3600L);
+        tokens.setValid(true);
+
+        encrypted = service.encrypt(tokens);
+
+        cachingService = new OAuthEncryptionService("0123456789abcdef0123456789abcdef");
+        cachingService.setTokenCache(new OAuthTokenCache(1000, 10, TimeUnit.MINUTES));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public EncryptedOAuthTokens encrypt_1() {
+        return service.encrypt(tokens);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public EncryptedOAuthTokens encrypt_4() {
+        return service.encrypt(tokens);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public EncryptedOAuthTokens encrypt_max() {
+        return service.encrypt(tokens);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public OAuth2Tokens decrypt_1() {
+        return service.decrypt(encrypted);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public OAuth2Tokens decrypt_4() {
+        return service.decrypt(encrypted);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public OAuth2Tokens decrypt_max() {
+        return service.decrypt(encrypted);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public OAuth2Tokens decryptCached_1() {
+        return cachingService.decrypt(encrypted);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public OAuth2Tokens decryptCached_max() {
+        return cachingService.decrypt(encrypted);
+    }
+}
@@ -0,0 +1,156 @@
+package io.dexi.benchmarks.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dexi.service.Schema;
+import io.dexi.service.SchemaRowCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading, summing and writing 1000 rows - with {@link SchemaRowCodec} compared to binding rows to maps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SchemaRowCodecBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private static final TypeReference<List<Map<String, Object>>> MAP_ROWS = new TypeReference<List<Map<String, Object>>>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private SchemaRowCodec codec;
+
+    private byte[] json;
+
+    private List<SchemaRowCodec.Row> rows;
+
+    private List<Map<String, Object>> maps;
+
+    private int price;
+
+    private int quantity;
+
+    @Setup
+    public void setup() throws IOException {
+        final Schema schema = new Schema();
+        schema.put("id", field("integer"));
+        schema.put("name", field("string"));
+        schema.put("price", field("number"));
+        schema.put("quantity", field("integer"));
+        schema.put("available", field("boolean"));
+        schema.put("url", field("url"));
+        codec = SchemaRowCodec.forSchema(schema);
+        price = codec.indexOf("price");
+        quantity = codec.indexOf("quantity");
+
+        final StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < ROWS; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"id\":").append(i)
+                    .append(",\"name\":\"Product ").append(i)
+                    .append("\",\"price\":").append(i * 1.25)
+                    .append(",\"quantity\":").append(i % 17)
+                    .append(",\"available\":").append(i % 3 == 0)
+                    .append(",\"url\":\"https://example.com/products/").append(i).append("\"}");
+        }
+        json = out.append(']').toString().getBytes(StandardCharsets.UTF_8);
+
+        rows = readRows();
+        maps = objectMapper.readValue(json, MAP_ROWS);
+    }
+
+    private static Schema.Field field(String type) {
+        final Schema.Field field = new Schema.Field();
+        field.setType(type);
+        return field;
+    }
+
+    private List<SchemaRowCodec.Row> readRows() throws IOException {
+        final List<SchemaRowCodec.Row> out = new ArrayList<>(ROWS);
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            SchemaRowCodec.Row row;
+            while ((row = codec.read(parser)) != null) {
+                out.add(row);
+            }
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double readAndSum_codec() throws IOException {
+        double total = 0;
+        final SchemaRowCodec.Row row = codec.newRow();
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            while (codec.read(parser, row)) {
+                total += row.getDouble(price) * row.getLong(quantity);
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double readAndSum_map() throws IOException {
+        double total = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                final Map<String, Object> row = parser.readValueAs(Map.class);
+                total += ((Number) row.get("price")).doubleValue() * ((Number) row.get("quantity")).longValue();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public void write_codec() throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(sink)) {
+            generator.writeStartArray();
+            for (SchemaRowCodec.Row row : rows) {
+                codec.write(generator, row);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    @Benchmark
+    public void write_map() throws IOException {
+        objectMapper.writeValue(sink, maps);
+    }
+}
@@ -1,12 +1,14 @@
 package io.dexi.client;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import okhttp3.ResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import retrofit2.Call;
-import retrofit2.Response;
-import retrofit2.Retrofit;
 import retrofit2.http.GET;
 import retrofit2.http.Path;
 
@@ -19,28 +21,46 @@ public class DexiAppClient {
 
     private final ObjectMapper objectMapper;
 
-    private final RestClient restClient;
+    private final OkHttpClient httpClient;
 
     private final String activationId;
 
-    DexiAppClient(String activationId, ObjectMapper objectMapper, Retrofit retrofit) {
+    private final HttpUrl configurationUrl;
+
+    DexiAppClient(String activationId, ObjectMapper objectMapper, OkHttpClient httpClient, HttpUrl baseUrl) {
         this.activationId = activationId;
-        restClient = retrofit.create(RestClient.class);
         this.objectMapper = objectMapper;
+        this.httpClient = httpClient;
+        this.configurationUrl = baseUrl.newBuilder()
+                .addPathSegments("apps/support/activations")
+                .addPathSegment(activationId)
+                .addPathSegment("configuration")
+                .build();
     }
 
     public <T> T getActivationConfig(Class<T> activationConfigType) throws IOException {
-        final Response<ResponseBody> response = restClient.getActivationConfig(activationId).execute();
+        final Request request = new Request.Builder()
+                .url(configurationUrl)
+                .header(DexiRequestScheduler.HEADER_PRIORITY, DexiRequestScheduler.Priority.INTERACTIVE.name())
+                .build();
 
-        if (!response.isSuccessful()) {
-            log.warn("Failed to get activation config for {}, status: {}, Error: {}",
-                    activationId, response.code(), response.errorBody().string());
-            return null;
-        }
+        try (Response response = httpClient.newCall(request).execute()) {
+            final ResponseBody body = response.body();
 
-        return objectMapper.readValue(response.body().bytes(), activationConfigType);
+            if (!response.isSuccessful()) {
+                log.warn("Failed to get activation config for {}, status: {}, Error: {}",
+                        activationId, response.code(), body != null ? body.string() : null);
+                return null;
+            }
+
+            return objectMapper.readValue(body.bytes(), activationConfigType);
+        }
     }
 
+    /**
+     * The endpoint as a retrofit service - for apps calling it through {@link DexiClientFactory.DexiClient#create(Class)}.
+     * Part of the public API, so it stays - the client itself calls the endpoint with OkHttp, skipping retrofit.
+     */
     public interface RestClient {
         @GET("apps/support/activations/{activationId}/configuration")
         Call<ResponseBody> getActivationConfig(@Path("activationId") String activationId);
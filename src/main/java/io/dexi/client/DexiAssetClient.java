@@ -0,0 +1,185 @@
+package io.dexi.client;
+
+import com.google.common.cache.Cache;
+import io.dexi.service.DexiAssetReference;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Resolves the dexi assets - robots, datasets etc. - referenced from configuration.
+ *
+ * The lookup itself is done by the {@link DexiAssetResolver} of the {@link DexiClientFactory}. Around it, lookups are
+ * deduplicated, batched and cached per account, asset type and id by the factory - so resolving the assets of a
+ * configuration on every run costs next to nothing after the first time. An asset being looked up for one caller is
+ * not looked up again for another, and a failed batch is not cached.
+ */
+public class DexiAssetClient {
+
+    /**
+     * How long to wait for assets being looked up by another caller
+     */
+    static final long FETCH_TIMEOUT_SECONDS = 60;
+
+    private final DexiClientFactory.DexiClient client;
+
+    private final String accountId;
+
+    private final Supplier<DexiAssetResolver> resolver;
+
+    private final Cache<AssetKey, CompletableFuture<DexiAssetReference>> cache;
+
+    DexiAssetClient(DexiClientFactory.DexiClient client, String accountId, Supplier<DexiAssetResolver> resolver,
+                    Cache<AssetKey, CompletableFuture<DexiAssetReference>> cache) {
+        this.client = client;
+        this.accountId = accountId;
+        this.resolver = resolver;
+        this.cache = cache;
+    }
+
+    /**
+     * Resolves a single asset
+     *
+     * @return the asset as known by dexi - or null if it does not exist
+     */
+    public DexiAssetReference resolve(DexiAssetReference reference) throws IOException {
+        return resolveAll(Collections.singletonList(reference)).get(0);
+    }
+
+    /**
+     * Resolves assets - looking up the ones not cached in a single batch, each only once
+     *
+     * @return the resolved assets in the order of the references - null for assets that do not exist
+     * @throws IllegalStateException if assets must be looked up and the factory has no {@link DexiAssetResolver}
+     */
+    public List<DexiAssetReference> resolveAll(Collection<? extends DexiAssetReference> references) throws IOException {
+        final ConcurrentMap<AssetKey, CompletableFuture<DexiAssetReference>> entries = cache.asMap();
+        final Map<AssetKey, CompletableFuture<DexiAssetReference>> resolved = new LinkedHashMap<>();
+        final Map<AssetKey, DexiAssetReference> missing = new LinkedHashMap<>();
+
+        for (DexiAssetReference reference : references) {
+            final AssetKey key = key(reference);
+            if (key == null || resolved.containsKey(key)) {
+                continue;
+            }
+
+            final CompletableFuture<DexiAssetReference> lookup = new CompletableFuture<>();
+            final CompletableFuture<DexiAssetReference> existing = entries.putIfAbsent(key, lookup);
+            if (existing != null) {
+                resolved.put(key, existing);
+            } else {
+                resolved.put(key, lookup);
+                missing.put(key, reference);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            lookup(missing, resolved);
+        }
+
+        final List<DexiAssetReference> out = new ArrayList<>(references.size());
+        for (DexiAssetReference reference : references) {
+            final AssetKey key = key(reference);
+            out.add(key != null ? await(resolved.get(key)) : null);
+        }
+
+        return out;
+    }
+
+    private void lookup(Map<AssetKey, DexiAssetReference> missing, Map<AssetKey, CompletableFuture<DexiAssetReference>> resolved) throws IOException {
+        final List<DexiAssetReference> found;
+        try {
+            final DexiAssetResolver current = resolver.get();
+            if (current == null) {
+                throw new IllegalStateException("No asset resolver set on the client factory");
+            }
+
+            found = current.resolve(client, new ArrayList<>(missing.values()));
+            if (found == null || found.size() != missing.size()) {
+                throw new IllegalStateException("Asset resolver must return one result per reference");
+            }
+        } catch (IOException | RuntimeException e) {
+            // Callers waiting for these assets get the failure - and the next lookup tries again
+            for (AssetKey key : missing.keySet()) {
+                final CompletableFuture<DexiAssetReference> lookup = resolved.get(key);
+                cache.asMap().remove(key, lookup);
+                lookup.completeExceptionally(e);
+            }
+            throw e;
+        }
+
+        int i = 0;
+        for (AssetKey key : missing.keySet()) {
+            resolved.get(key).complete(found.get(i++));
+        }
+    }
+
+    private static DexiAssetReference await(CompletableFuture<DexiAssetReference> lookup) throws IOException {
+        try {
+            return lookup.get(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resolving assets", e);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for assets after " + FETCH_TIMEOUT_SECONDS + " seconds", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            }
+            throw new RuntimeException("Failed to resolve assets", e.getCause());
+        }
+    }
+
+    private AssetKey key(DexiAssetReference reference) {
+        if (reference == null || reference.getId() == null || reference.getType() == null) {
+            return null;
+        }
+
+        return new AssetKey(accountId, reference.getType(), reference.getId());
+    }
+
+    static final class AssetKey {
+
+        private final String accountId;
+
+        private final String type;
+
+        private final String id;
+
+        AssetKey(String accountId, String type, String id) {
+            this.accountId = accountId;
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof AssetKey)) {
+                return false;
+            }
+
+            final AssetKey other = (AssetKey) o;
+            return id.equals(other.id) && type.equals(other.type) && accountId.equals(other.accountId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * accountId.hashCode() + type.hashCode()) + id.hashCode();
+        }
+    }
+}
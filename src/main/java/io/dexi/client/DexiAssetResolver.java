@@ -0,0 +1,23 @@
+package io.dexi.client;
+
+import io.dexi.service.DexiAssetReference;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Looks up dexi assets for a {@link DexiAssetClient} - provided by the app, see
+ * {@link DexiClientFactory#setAssetResolver(DexiAssetResolver)}.
+ *
+ * Called with batches of distinct references that are neither cached nor being looked up by another caller.
+ */
+public interface DexiAssetResolver {
+
+    /**
+     * @param client the client of the activation the assets belong to
+     * @param references the assets to look up - all with a type and id
+     * @return the assets in the order of the references - null for assets that do not exist
+     * @throws IOException if the lookup failed - nothing of the batch is cached
+     */
+    List<DexiAssetReference> resolve(DexiClientFactory.DexiClient client, List<DexiAssetReference> references) throws IOException;
+}
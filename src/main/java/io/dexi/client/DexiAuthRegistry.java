@@ -0,0 +1,51 @@
+package io.dexi.client;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The accounts a {@link DexiClientFactory} can act as - keyed by account id.
+ *
+ * Each account's access digest is calculated once, when it is registered.
+ */
+public class DexiAuthRegistry {
+
+    private final ConcurrentMap<String, DexiAuth> auths = new ConcurrentHashMap<>();
+
+    public static DexiAuthRegistry of(DexiAuth... auths) {
+        final DexiAuthRegistry registry = new DexiAuthRegistry();
+        for (DexiAuth auth : auths) {
+            registry.register(auth);
+        }
+        return registry;
+    }
+
+    public DexiAuth register(String accountId, String apiKey) {
+        return register(DexiAuth.from(accountId, apiKey));
+    }
+
+    /**
+     * Registers an account - replacing any previous registration of the same account
+     */
+    public DexiAuth register(DexiAuth auth) {
+        auths.put(auth.getAccountId(), auth);
+        return auth;
+    }
+
+    public DexiAuth remove(String accountId) {
+        return auths.remove(accountId);
+    }
+
+    /**
+     * @return the account - or null if it is not registered
+     */
+    public DexiAuth get(String accountId) {
+        return auths.get(accountId);
+    }
+
+    public Set<String> getAccountIds() {
+        return Collections.unmodifiableSet(auths.keySet());
+    }
+}
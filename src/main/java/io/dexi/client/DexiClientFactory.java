@@ -2,13 +2,21 @@ package io.dexi.client;
 
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.base.Optional;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.dexi.config.DexiConfig;
+import io.dexi.service.DexiAssetReference;
 import io.dexi.service.DexiPayloadHeaders;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import org.slf4j.Logger;
@@ -17,10 +25,20 @@ import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 
+/**
+ * Creates clients for calling dexi on behalf of app activations.
+ *
+ * A factory can serve many accounts - see {@link DexiAuthRegistry}. Clients are cached per account and activation, and
+ * all clients of a factory share one connection pool and dispatcher.
+ */
 public class DexiClientFactory {
     private static final Logger log = LoggerFactory.getLogger(DexiClientFactory.class);
 
@@ -29,26 +47,78 @@ public class DexiClientFactory {
      */
     public static final String AUTH_TYPE = "APP";
 
+    /**
+     * Dispatcher limits for async calls. High, since the {@link DexiRequestScheduler} does the actual limiting - calls
+     * waiting in the scheduler hold a dispatcher slot, and block one of its threads. Async calls beyond the limit wait
+     * in the dispatcher, so at most this many dispatcher threads are used.
+     */
+    public static final int DEFAULT_DISPATCHER_MAX_REQUESTS = 256;
+
+    public static final int DEFAULT_DISPATCHER_MAX_REQUESTS_PER_HOST = 256;
+
 
-    protected final Cache<String, DexiClient> clientCache = CacheBuilder.newBuilder()
-            .maximumSize(10)
+    protected final Cache<ClientKey, DexiClient> clientCache = CacheBuilder.newBuilder()
+            .maximumSize(100)
             .expireAfterWrite(5, TimeUnit.MINUTES)
             .build();
 
-    private Cache<String, Object> activationConfigCache = CacheBuilder.newBuilder()
-            .maximumSize(50)
+    private Cache<ClientKey, Object> activationConfigCache = CacheBuilder.newBuilder()
+            .maximumSize(200)
             .expireAfterWrite(30, TimeUnit.SECONDS)
             .build();
 
+    /**
+     * Parsed configuration headers - keyed by SHA-256 of the header. The header is sent by the caller, so a hash that is
+     * not collision resistant could hand out another activation's configuration. Never handed out - every call binds
+     * its own object from the tree.
+     */
+    private final Cache<HashCode, JsonNode> configurationCache = CacheBuilder.newBuilder()
+            .maximumSize(200)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Resolved assets - shared by all clients of the factory
+     */
+    private final Cache<DexiAssetClient.AssetKey, CompletableFuture<DexiAssetReference>> assetCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    private volatile DexiAssetResolver assetResolver;
+
+    private final ConcurrentMap<Class<?>, ObjectReader> configurationReaders = new ConcurrentHashMap<>();
+
     protected final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * The default account - used by {@link #create(String)}. Null if the factory was created from a registry.
+     */
     protected final DexiAuth auth;
 
+    protected final DexiAuthRegistry authRegistry;
+
     protected final String baseUrl;
 
+    private final HttpUrl httpBaseUrl;
+
+    /**
+     * Shared by all clients - so all accounts and activations use the same connection pool and dispatcher
+     */
+    protected final OkHttpClient httpClient;
+
+    /**
+     * Limits and orders the requests of all clients - see {@link DexiRequestScheduler}
+     */
+    protected final DexiRequestScheduler requestScheduler = new DexiRequestScheduler();
+
+    /**
+     * Collapses identical GET requests in flight at the same time - see {@link DexiRequestCoalescer}
+     */
+    protected final DexiRequestCoalescer requestCoalescer = new DexiRequestCoalescer();
+
     public DexiClientFactory() {
-        this.baseUrl = safeBaseUrl(DexiConfig.getBaseUrl());
-        this.auth = DexiAuth.from(DexiConfig.getAccount(), DexiConfig.getApiKey());
+        this(DexiConfig.getBaseUrl(), DexiAuth.from(DexiConfig.getAccount(), DexiConfig.getApiKey()));
     }
 
     public DexiClientFactory(DexiAuth auth) {
@@ -56,8 +126,25 @@ public class DexiClientFactory {
     }
 
     public DexiClientFactory(String baseUrl, DexiAuth auth) {
+        this(baseUrl, auth, DexiAuthRegistry.of(auth));
+    }
+
+    /**
+     * Create a factory for many accounts. Use {@link #create(String, String)} to get clients.
+     */
+    public DexiClientFactory(String baseUrl, DexiAuthRegistry authRegistry) {
+        this(baseUrl, null, authRegistry);
+    }
+
+    private DexiClientFactory(String baseUrl, DexiAuth auth, DexiAuthRegistry authRegistry) {
         this.baseUrl = safeBaseUrl(baseUrl);
+        this.httpBaseUrl = HttpUrl.parse(this.baseUrl);
+        if (httpBaseUrl == null) {
+            throw new IllegalArgumentException("Invalid base url: " + baseUrl);
+        }
         this.auth = auth;
+        this.authRegistry = authRegistry;
+        this.httpClient = buildHttpClient();
 
         setupObjectMapper();
     }
@@ -77,11 +164,92 @@ public class DexiClientFactory {
         objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
     }
 
+    /**
+     * Build the HTTP client shared by all clients of the factory - override to configure timeouts, proxies etc.
+     *
+     * Clients derive their own {@link OkHttpClient} from this using {@link OkHttpClient#newBuilder()} - which keeps
+     * the connection pool and dispatcher.
+     */
+    protected OkHttpClient buildHttpClient() {
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(DEFAULT_DISPATCHER_MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(DEFAULT_DISPATCHER_MAX_REQUESTS_PER_HOST);
+
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .build();
+    }
+
+    /**
+     * The dispatcher running async calls for all clients - the limits can be changed at any time
+     */
+    public Dispatcher getDispatcher() {
+        return httpClient.dispatcher();
+    }
+
+    public DexiRequestScheduler getRequestScheduler() {
+        return requestScheduler;
+    }
+
+    public DexiRequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * Limit the number of concurrent requests to dexi, across all clients of the factory
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        requestScheduler.setMaxConcurrentRequests(maxConcurrentRequests);
+    }
+
+    public DexiAssetResolver getAssetResolver() {
+        return assetResolver;
+    }
+
+    /**
+     * Set how assets are looked up by {@link DexiClient#assets()} - dexi has no endpoint for resolving assets, so the
+     * app provides the lookup
+     */
+    public void setAssetResolver(DexiAssetResolver assetResolver) {
+        this.assetResolver = assetResolver;
+    }
+
+    public DexiAuthRegistry getAuthRegistry() {
+        return authRegistry;
+    }
+
+    /**
+     * Get a client for an activation of the default account
+     */
     public DexiClient create(final String activationId) {
+        if (auth == null) {
+            throw new IllegalStateException("Factory has no default account - use create(accountId, activationId)");
+        }
+
+        return create(auth.getAccountId(), activationId);
+    }
+
+    /**
+     * Get a client for an activation of a registered account
+     */
+    public DexiClient create(final String accountId, final String activationId) {
         assert activationId != null && !activationId.isEmpty();
 
+        final DexiAuth accountAuth = authRegistry.get(accountId);
+        if (accountAuth == null) {
+            throw new IllegalArgumentException("Account not registered: " + accountId);
+        }
+
+        final ClientKey key = new ClientKey(accountId, activationId);
+
         try {
-            return clientCache.get(activationId, () -> new DexiClient(activationId));
+            DexiClient client = clientCache.get(key, () -> new DexiClient(accountAuth, activationId));
+            if (client.auth != accountAuth) {
+                // The account was registered again with another api key
+                clientCache.invalidate(key);
+                client = clientCache.get(key, () -> new DexiClient(accountAuth, activationId));
+            }
+            return client;
         } catch (ExecutionException e) {
             log.error("Failed to instantiate dexi client", e);
             throw new RuntimeException("Failed to instantiate dexi client", e);
@@ -89,11 +257,19 @@ public class DexiClientFactory {
     }
 
     public <T> T getActivationConfig(String activationId, Class<T> activationClass) throws DexiClientException {
+        if (auth == null) {
+            throw new IllegalStateException("Factory has no default account - use getActivationConfig(accountId, activationId, activationClass)");
+        }
+
+        return getActivationConfig(auth.getAccountId(), activationId, activationClass);
+    }
+
+    public <T> T getActivationConfig(String accountId, String activationId, Class<T> activationClass) throws DexiClientException {
         try {
             assert activationId != null && !activationId.isEmpty();
 
-            final Optional<T> activationConfig = (Optional<T>) activationConfigCache.get(activationId,
-                () -> Optional.fromNullable(create(activationId).apps().getActivationConfig(activationClass))
+            final Optional<T> activationConfig = (Optional<T>) activationConfigCache.get(new ClientKey(accountId, activationId),
+                () -> Optional.fromNullable(create(accountId, activationId).apps().getActivationConfig(activationClass))
             );
 
             return activationConfig.orNull();
@@ -103,6 +279,14 @@ public class DexiClientFactory {
         }
     }
 
+    /**
+     * Get the configuration sent by dexi in the configuration header of a request.
+     *
+     * Requests for an activation usually carry the exact same header - so the parsed header is cached by a SHA-256 of
+     * the header, and repeated headers are bound without parsing the JSON again. Every call returns a new object.
+     *
+     * @return the configuration - or null if the request had no configuration
+     */
     public <T> T getConfiguration(HttpRequest request, Class<T> clz) throws IOException {
 
         final String json = request.getHeader(DexiPayloadHeaders.CONFIGURATION);
@@ -110,31 +294,102 @@ public class DexiClientFactory {
             return null;
         }
 
-        return objectMapper.readValue(json, clz);
+        final HashCode key = Hashing.sha256().hashString(json, StandardCharsets.UTF_8);
+
+        final JsonNode tree;
+        try {
+            tree = configurationCache.get(key, () -> objectMapper.readTree(json));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to read configuration", e.getCause());
+        }
+
+        return configurationReader(clz).readValue(tree);
+    }
+
+    private ObjectReader configurationReader(Class<?> clz) {
+        return configurationReaders.computeIfAbsent(clz, objectMapper::readerFor);
     }
 
     public interface HttpRequest {
         public String getHeader(String headerName);
     }
 
+    /**
+     * Clients are cached per account and activation
+     */
+    protected static final class ClientKey {
+
+        private final String accountId;
+
+        private final String activationId;
+
+        private ClientKey(String accountId, String activationId) {
+            this.accountId = accountId;
+            this.activationId = activationId;
+        }
+
+        public String getAccountId() {
+            return accountId;
+        }
+
+        public String getActivationId() {
+            return activationId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+
+            final ClientKey other = (ClientKey) o;
+            return activationId.equals(other.activationId) && accountId.equals(other.accountId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * accountId.hashCode() + activationId.hashCode();
+        }
+    }
+
     public class DexiClient {
 
+        protected final DexiAuth auth;
+
         protected final String activationId;
 
-        protected final Retrofit retrofit;
+        protected final OkHttpClient httpClient;
+
+        private volatile Retrofit retrofit;
 
         protected final DexiFileClient fileClient;
 
         protected final DexiAppClient appClient;
 
+        protected final DexiAssetClient assetClient;
+
         protected DexiClient(String activationId) {
+            this(DexiClientFactory.this.auth, activationId);
+        }
+
+        protected DexiClient(DexiAuth auth, String activationId) {
+            this.auth = auth;
             this.activationId = activationId;
 
-            this.retrofit = buildRetrofit(auth, baseUrl);
+            this.httpClient = buildClient(auth);
 
-            this.fileClient = new DexiFileClient(activationId, retrofit);
+            this.fileClient = new DexiFileClient(activationId, httpClient, httpBaseUrl);
 
-            this.appClient = new DexiAppClient(activationId, objectMapper, retrofit);
+            this.appClient = new DexiAppClient(activationId, objectMapper, httpClient, httpBaseUrl);
+
+            this.assetClient = new DexiAssetClient(this, auth.getAccountId(), DexiClientFactory.this::getAssetResolver, assetCache);
         }
 
 
@@ -157,6 +412,15 @@ public class DexiClientFactory {
             return appClient;
         }
 
+        /**
+         * Client for resolving assets referenced from configuration
+         *
+         * @return the client
+         */
+        public DexiAssetClient assets() {
+            return assetClient;
+        }
+
         /**
          * Create retrofit client which will send all the proper dexi headers etc.
          *
@@ -165,7 +429,26 @@ public class DexiClientFactory {
          * @return
          */
         public <T> T create(Class<T> service) {
-            return retrofit.create(service);
+            return getRetrofit().create(service);
+        }
+
+        /**
+         * The retrofit instance used by {@link #create(Class)} - built on first use with
+         * {@link #buildRetrofit(DexiAuth, String)}, the built-in clients do not need it. Replaces the former
+         * {@code retrofit} field for subclasses.
+         */
+        protected Retrofit getRetrofit() {
+            Retrofit current = retrofit;
+            if (current == null) {
+                synchronized (this) {
+                    current = retrofit;
+                    if (current == null) {
+                        current = buildRetrofit(auth, baseUrl);
+                        retrofit = current;
+                    }
+                }
+            }
+            return current;
         }
 
         /**
@@ -179,18 +462,19 @@ public class DexiClientFactory {
             return new Retrofit.Builder()
                     .baseUrl(baseUrl)
                     .addConverterFactory(JacksonConverterFactory.create(objectMapper))
-                    .client(buildClient(auth))
+                    .client(httpClient)
                     .build();
         }
 
         /**
-         * Build OkHttpClient instance - override to add custom implementation
+         * Build OkHttpClient instance - override to add custom implementation. Derived from the factory's shared
+         * client, so connections and threads are shared with the other clients.
          *
          * @param auth
          * @return
          */
         protected OkHttpClient buildClient(final DexiAuth auth) {
-            OkHttpClient.Builder httpClient = new OkHttpClient.Builder();
+            OkHttpClient.Builder httpClient = DexiClientFactory.this.httpClient.newBuilder();
             httpClient.addInterceptor(chain -> {
                 Request original = chain.request();
 
@@ -205,6 +489,11 @@ public class DexiClientFactory {
                 return chain.proceed(request);
             });
 
+            // After the headers - identical requests are only identical for the same account and activation, and
+            // the scheduler takes turns by activation. Coalesced requests do not take a slot in the scheduler.
+            httpClient.addInterceptor(requestCoalescer);
+            httpClient.addInterceptor(requestScheduler);
+
             return httpClient.build();
         }
     }
@@ -1,10 +1,12 @@
 package io.dexi.client;
 
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import okhttp3.ResponseBody;
 import org.apache.commons.lang.StringUtils;
 import retrofit2.Call;
-import retrofit2.Response;
-import retrofit2.Retrofit;
 import retrofit2.http.GET;
 import retrofit2.http.Path;
 
@@ -26,13 +28,17 @@ public class DexiFileClient {
     private static final Pattern DEXI_FILE_ID_PATTERN = Pattern.compile("^(FILE:)([^;]*);" +
             "([^;]*);(.+)$");
 
-    private final RestClient restClient;
+    private final OkHttpClient httpClient;
 
-    private final String activationId;
+    private final HttpUrl fileUrl;
 
-    DexiFileClient(String activationId, Retrofit retrofit) {
-        this.activationId = activationId;
-        restClient = retrofit.create(RestClient.class);
+    DexiFileClient(String activationId, OkHttpClient httpClient, HttpUrl baseUrl) {
+        this.httpClient = httpClient;
+        this.fileUrl = baseUrl.newBuilder()
+                .addPathSegments("apps/support/activations")
+                .addPathSegment(activationId)
+                .addPathSegment("file")
+                .build();
     }
 
     /**
@@ -67,12 +73,18 @@ public class DexiFileClient {
             return null;
         }
 
-        final Response<ResponseBody> response = restClient.getFile(activationId, fileId).execute();
+        final Request request = new Request.Builder()
+                .url(fileUrl.newBuilder().addQueryParameter("fileId", fileId).build())
+                .header(DexiRequestScheduler.HEADER_PRIORITY, DexiRequestScheduler.Priority.BULK.name())
+                .build();
+
+        final Response response = httpClient.newCall(request).execute();
 
         if (response.isSuccessful()) {
             final ResponseBody responseBody = response.body();
             if (responseBody == null) {
                 log.warn("Failed to load file from pointer: {} - Response code: {}. Body was null", value, response.code());
+                response.close();
                 return null;
             }
 
@@ -86,11 +98,16 @@ public class DexiFileClient {
             return new FileHandle(fileId, responseBody.byteStream(), fileSize);
         } else {
             log.warn("Failed to load file from pointer: {} - Response code: {}", value, response.code());
+            response.close();
         }
 
         return null;
     }
 
+    /**
+     * The endpoint as a retrofit service - for apps calling it through {@link DexiClientFactory.DexiClient#create(Class)}.
+     * Part of the public API, so it stays - the client itself calls the endpoint with OkHttp, skipping retrofit.
+     */
     public interface RestClient {
 
         @Streaming
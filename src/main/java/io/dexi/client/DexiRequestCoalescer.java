@@ -0,0 +1,320 @@
+package io.dexi.client;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Collapses identical GET requests that are in flight at the same time into a single call to dexi.
+ *
+ * The first request goes to dexi - requests with the same url and headers arriving before its response headers wait
+ * for it and get a copy of the response. The body is read from dexi once and buffered while it is read, so every copy
+ * can be read - and streamed - independently.
+ *
+ * Responses without a known length, or larger than the max shared body size, are not shared - waiting requests are
+ * sent on their own instead.
+ */
+public class DexiRequestCoalescer implements Interceptor {
+
+    public static final long DEFAULT_MAX_SHARED_BODY_SIZE = 8 * 1024 * 1024;
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final long maxSharedBodySize;
+
+    private volatile boolean enabled = true;
+
+    public DexiRequestCoalescer() {
+        this(DEFAULT_MAX_SHARED_BODY_SIZE);
+    }
+
+    public DexiRequestCoalescer(long maxSharedBodySize) {
+        this.maxSharedBodySize = maxSharedBodySize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * The number of distinct requests currently in flight
+     */
+    public int getInFlightCount() {
+        return flights.size();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final Request request = chain.request();
+        if (!enabled || !"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+
+        final String key = request.url() + "\n" + request.headers();
+
+        while (true) {
+            final Flight flight = new Flight();
+            final Flight existing = flights.putIfAbsent(key, flight);
+
+            if (existing == null) {
+                return lead(chain, key, flight);
+            }
+
+            if (existing.join()) {
+                final Response response = existing.await();
+                if (response != null) {
+                    return response.newBuilder().request(request).build();
+                }
+
+                // Not shareable - go alone
+                return chain.proceed(request);
+            }
+
+            // The flight just landed - try again
+        }
+    }
+
+    private Response lead(Chain chain, String key, Flight flight) throws IOException {
+        final Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            land(key, flight).fail(e);
+            throw e;
+        }
+
+        land(key, flight);
+
+        final ResponseBody body = response.body();
+        if (body == null || body.contentLength() < 0 || body.contentLength() > maxSharedBodySize) {
+            flight.complete(null, null);
+            return response;
+        }
+
+        final Response template = response.newBuilder().body(null).build();
+        final SharedBody shared = flight.complete(template, body);
+        if (shared == null) {
+            return response;
+        }
+
+        return template.newBuilder().body(shared.newBody()).build();
+    }
+
+    /**
+     * Stops new requests from joining the flight - requests arriving later start a new one
+     */
+    private Flight land(String key, Flight flight) {
+        flights.remove(key, flight);
+        synchronized (flight) {
+            flight.landed = true;
+        }
+        return flight;
+    }
+
+    private static final class Flight {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private int followers;
+
+        private boolean landed;
+
+        private Response template;
+
+        private SharedBody body;
+
+        private Throwable failure;
+
+        private int abandoned;
+
+        private synchronized boolean join() {
+            if (landed) {
+                return false;
+            }
+            followers++;
+            return true;
+        }
+
+        /**
+         * Shares the response with the followers
+         *
+         * @return the shared body - or null if there is no one to share it with
+         */
+        private synchronized SharedBody complete(Response template, ResponseBody upstream) {
+            final int waiting = followers - abandoned;
+            if (template != null && waiting > 0) {
+                this.template = template;
+                this.body = new SharedBody(upstream, waiting + 1);
+            }
+            done.countDown();
+            return body;
+        }
+
+        /**
+         * A follower stopped waiting - its copy of the body is closed right away
+         */
+        private synchronized void abandon() {
+            if (body != null) {
+                body.newBody().close();
+            } else if (done.getCount() > 0) {
+                abandoned++;
+            }
+        }
+
+        private void fail(Throwable failure) {
+            // An interrupted leader says nothing about the request - let the followers go alone
+            if (!(failure instanceof InterruptedIOException)) {
+                this.failure = failure;
+            }
+            done.countDown();
+        }
+
+        /**
+         * @return a copy of the response - or null if the response could not be shared
+         */
+        private Response await() throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandon();
+                throw new InterruptedIOException("Interrupted while waiting for identical request");
+            }
+
+            if (failure instanceof IOException) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            if (failure != null) {
+                throw new RuntimeException("Failed to execute identical request", failure);
+            }
+
+            if (template == null) {
+                return null;
+            }
+
+            return template.newBuilder().body(body.newBody()).build();
+        }
+    }
+
+    /**
+     * A response body read once from the network and buffered - each copy reads from the buffer at its own pace.
+     * The network body is closed when it has been read to the end, or when all copies have been closed.
+     */
+    private static final class SharedBody {
+
+        private static final long SEGMENT = 8192;
+
+        private final ResponseBody upstream;
+
+        private final MediaType contentType;
+
+        private final long contentLength;
+
+        private final Buffer data = new Buffer();
+
+        private int open;
+
+        private boolean exhausted;
+
+        private SharedBody(ResponseBody upstream, int copies) {
+            this.upstream = upstream;
+            this.contentType = upstream.contentType();
+            this.contentLength = upstream.contentLength();
+            this.open = copies;
+        }
+
+        private ResponseBody newBody() {
+            final BufferedSource source = Okio.buffer(new CopySource());
+            return new ResponseBody() {
+                @Override
+                public MediaType contentType() {
+                    return contentType;
+                }
+
+                @Override
+                public long contentLength() {
+                    return contentLength;
+                }
+
+                @Override
+                public BufferedSource source() {
+                    return source;
+                }
+            };
+        }
+
+        private synchronized long read(long position, Buffer sink, long byteCount) throws IOException {
+            while (position >= data.size() && !exhausted) {
+                if (upstream.source().read(data, SEGMENT) == -1) {
+                    exhausted = true;
+                    upstream.close();
+                }
+            }
+
+            if (position >= data.size()) {
+                return -1;
+            }
+
+            final long count = Math.min(byteCount, data.size() - position);
+            data.copyTo(sink, position, count);
+            return count;
+        }
+
+        private synchronized void close() {
+            open--;
+            if (open == 0 && !exhausted) {
+                upstream.close();
+            }
+        }
+
+        private final class CopySource implements Source {
+
+            private long position;
+
+            private boolean closed;
+
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                if (closed) {
+                    throw new IllegalStateException("closed");
+                }
+
+                final long read = SharedBody.this.read(position, sink, byteCount);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            }
+
+            @Override
+            public Timeout timeout() {
+                return upstream.source().timeout();
+            }
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    SharedBody.this.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package io.dexi.client;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Limits the number of concurrent requests to dexi - and decides who goes next when the limit is reached.
+ *
+ * Waiting requests are served by {@link Priority} first - an {@link Priority#INTERACTIVE} request always goes before
+ * a {@link Priority#BULK} one. Within a priority, activations take turns, so one activation with many queued requests
+ * does not hold up the others.
+ *
+ * Set the priority of a request with the {@link #HEADER_PRIORITY} header - it is removed before the request is sent.
+ * Requests without it are {@link Priority#DEFAULT}.
+ *
+ * A request holds its slot from when it is sent until the response headers have been received - reading the response
+ * body is not limited. File downloads are limited while waiting for dexi to answer, not while streaming the file.
+ */
+public class DexiRequestScheduler implements Interceptor {
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 32;
+
+    /**
+     * Name of a {@link Priority} - only read by the scheduler, never sent to dexi
+     */
+    public static final String HEADER_PRIORITY = "X-DexiIO-Priority";
+
+    public enum Priority {
+        /**
+         * Someone is waiting for the answer - e.g. activation configuration
+         */
+        INTERACTIVE,
+
+        DEFAULT,
+
+        /**
+         * Large or many requests where throughput matters more than latency - e.g. file downloads
+         */
+        BULK
+    }
+
+    private final Map<Priority, LinkedHashMap<String, ArrayDeque<Waiter>>> queues = new EnumMap<>(Priority.class);
+
+    private int maxConcurrentRequests;
+
+    private int inFlight;
+
+    private int waiting;
+
+    public DexiRequestScheduler() {
+        this(DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    public DexiRequestScheduler(int maxConcurrentRequests) {
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new LinkedHashMap<>());
+        }
+        setMaxConcurrentRequests(maxConcurrentRequests);
+    }
+
+    public synchronized int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Change the limit - raising it lets waiting requests through right away
+     */
+    public synchronized void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("Max concurrent requests must be positive: " + maxConcurrentRequests);
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        grant();
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlight;
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiting;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        final Priority priority = priorityOf(request);
+        if (request.header(HEADER_PRIORITY) != null) {
+            request = request.newBuilder().removeHeader(HEADER_PRIORITY).build();
+        }
+
+        final String activationId = request.header(DexiAuth.HEADER_ACTIVATION);
+
+        try {
+            acquire(priority, activationId != null ? activationId : "");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to send request");
+        }
+
+        try {
+            return chain.proceed(request);
+        } finally {
+            release();
+        }
+    }
+
+    static Priority priorityOf(Request request) {
+        final String priority = request.header(HEADER_PRIORITY);
+        if (priority == null) {
+            return Priority.DEFAULT;
+        }
+
+        try {
+            return Priority.valueOf(priority);
+        } catch (IllegalArgumentException e) {
+            return Priority.DEFAULT;
+        }
+    }
+
+    void acquire(Priority priority, String activationId) throws InterruptedException {
+        final Waiter waiter;
+
+        synchronized (this) {
+            if (waiting == 0 && inFlight < maxConcurrentRequests) {
+                inFlight++;
+                return;
+            }
+
+            waiter = new Waiter();
+            queues.get(priority).computeIfAbsent(activationId, id -> new ArrayDeque<>()).add(waiter);
+            waiting++;
+
+            try {
+                while (!waiter.granted) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // Too late - give the slot to the next in line
+                    inFlight--;
+                    grant();
+                } else {
+                    remove(priority, activationId, waiter);
+                }
+                throw e;
+            }
+        }
+    }
+
+    synchronized void release() {
+        inFlight--;
+        grant();
+    }
+
+    private void grant() {
+        boolean granted = false;
+
+        while (waiting > 0 && inFlight < maxConcurrentRequests) {
+            final Waiter next = next();
+            next.granted = true;
+            inFlight++;
+            waiting--;
+            granted = true;
+        }
+
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Takes the next waiter - from the first activation of the highest priority, which then goes to the back
+     */
+    private Waiter next() {
+        for (LinkedHashMap<String, ArrayDeque<Waiter>> activations : queues.values()) {
+            final Iterator<Map.Entry<String, ArrayDeque<Waiter>>> iterator = activations.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                continue;
+            }
+
+            final Map.Entry<String, ArrayDeque<Waiter>> first = iterator.next();
+            final ArrayDeque<Waiter> queue = first.getValue();
+            final Waiter waiter = queue.poll();
+
+            iterator.remove();
+            if (!queue.isEmpty()) {
+                activations.put(first.getKey(), queue);
+            }
+
+            return waiter;
+        }
+
+        throw new IllegalStateException("No waiting requests");
+    }
+
+    private void remove(Priority priority, String activationId, Waiter waiter) {
+        final ArrayDeque<Waiter> queue = queues.get(priority).get(activationId);
+        if (queue != null && queue.remove(waiter)) {
+            waiting--;
+            if (queue.isEmpty()) {
+                queues.get(priority).remove(activationId);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private boolean granted;
+    }
+}
@@ -9,16 +9,22 @@ import org.apache.commons.configuration2.builder.fluent.Parameters;
 import org.apache.commons.configuration2.builder.fluent.PropertiesBuilderParameters;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -67,6 +73,13 @@ import java.util.regex.Pattern;
  *              <li>If its value is a URL, the configuration file is read from that URL.</li>
  *                  <ul>
  *                      <li>The URL most point to a YAML (.yml) file.</li>
+ *                      <li>If an environment variable or system property named {@code DEXI_APP_CREDENTIALS_CACHE}
+ *                          names a directory, a copy of the file is kept there. When a copy exists, it is used right
+ *                          away and revalidated in the background. Without it, the file is always read from the
+ *                          URL.</li>
+ *                      <li>The copy includes any credentials in the file - so they are persisted on disk. The
+ *                          directory and copies are only readable by the owner (0700 / 0600) on file systems
+ *                          supporting POSIX permissions.</li>
  *                  </ul>
  *              <li>Otherwise, the configuration file is read from the local disk.</li>
  *                  <ul>
@@ -85,47 +98,77 @@ import java.util.regex.Pattern;
  *
  *  Values for duplicate keys within sections are overwritten by later keys.
  *
+ *  Each {@link #load()} builds a new, immutable {@link DexiConfigSnapshot} and swaps it in atomically - readers never
+ *  block and never see a half loaded configuration. Use {@link #watch()} to reload automatically when the local
+ *  configuration file changes, and {@link #addChangeListener(ChangeListener)} to be told about new configuration.
+ *
+ *  Use {@link #registerSection(String, Class)} to bind a section, like {@code google.*}, to a POJO - values are
+ *  converted once per load instead of on every read.
+ *
  */
 public class DexiConfig {
 
     public static final String DEFAULT_BASE_URL = "https://api.dexi.io/";
     public static final String ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_NAME = "DEXI_APP_CREDENTIALS";
+    public static final String ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_CACHE_NAME = "DEXI_APP_CREDENTIALS_CACHE";
     public static final String ENVIRONMENT_VARIABLE_DEXI_APP_PREFIX = "DEXI_APP_";
 
     public static final String CONFIG_KEY_BASE_URL = "baseUrl";
     public static final String CONFIG_KEY_ACCOUNT = "account";
     public static final String CONFIG_KEY_API_KEY = "apiKey";
 
+    private static final Logger log = LoggerFactory.getLogger(DexiConfig.class);
+
     private static String DEFAULT_CONFIG_FILE = System.getProperty("user.home") + "/.dexi/configuration.yml";
-    private static Properties properties = new Properties();
+    private static final AtomicReference<DexiConfigSnapshot> snapshot = new AtomicReference<>(DexiConfigSnapshot.EMPTY);
+    private static final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private static final List<DexiConfigSection<?>> sections = new CopyOnWriteArrayList<>();
+    private static DexiConfigUrlCache urlCache;
     private static final Pattern urlPattern = Pattern.compile("https?://");
 
-    private static void readEnvironment() {
-        Properties systemProperties = System.getProperties();
-        Map<String, String> environment = System.getenv();
-        systemProperties.putAll(environment);
-
-        Set<Object> keys = systemProperties.keySet();
-        if (keys.size() > 0) {
-            for (Object propertyKey : keys) {
-                String propertyKeyString = String.valueOf(propertyKey);
-                if (propertyKeyString.startsWith(ENVIRONMENT_VARIABLE_DEXI_APP_PREFIX) && !propertyKeyString.startsWith(ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_NAME)) {
-                    String envKeyWithoutPrefix = propertyKeyString.substring(ENVIRONMENT_VARIABLE_DEXI_APP_PREFIX.length());
-                    if (envKeyWithoutPrefix.indexOf("_") == -1) {
-                        continue;
-                    }
-
-                    String section = envKeyWithoutPrefix.substring(0, envKeyWithoutPrefix.indexOf("_"));
-                    String key = envKeyWithoutPrefix.substring(envKeyWithoutPrefix.indexOf("_") + 1);
-                    String value = (String) systemProperties.get(propertyKeyString);
+    private static void readEnvironment(Map<String, Object> values) {
+        // Environment variables win over system properties of the same name
+        final Map<String, String> variables = new LinkedHashMap<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            variables.put(name, System.getProperty(name));
+        }
+        variables.putAll(System.getenv());
 
-                    String keyWithSection = String.format("%s.%s", section, key);
-                    DexiConfig.properties.setProperty(keyWithSection, value);
+        for (Map.Entry<String, String> variable : variables.entrySet()) {
+            String propertyKeyString = variable.getKey();
+            if (propertyKeyString.startsWith(ENVIRONMENT_VARIABLE_DEXI_APP_PREFIX) && !propertyKeyString.startsWith(ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_NAME)) {
+                String envKeyWithoutPrefix = propertyKeyString.substring(ENVIRONMENT_VARIABLE_DEXI_APP_PREFIX.length());
+                if (envKeyWithoutPrefix.indexOf("_") == -1) {
+                    continue;
                 }
+
+                String section = envKeyWithoutPrefix.substring(0, envKeyWithoutPrefix.indexOf("_"));
+                String key = envKeyWithoutPrefix.substring(envKeyWithoutPrefix.indexOf("_") + 1);
+
+                String keyWithSection = String.format("%s.%s", section, key);
+                values.put(keyWithSection, variable.getValue());
             }
         }
     }
 
+    /**
+     * Resolves the local file of a location - null for URLs
+     */
+    private static File getLocalFile(String fileLocation) throws URISyntaxException {
+        if (isUrl(fileLocation)) {
+            return null;
+        }
+
+        URI uri = new URI(fileLocation);
+        String localFilename = uri.getPath();
+        if ("classpath".equalsIgnoreCase(uri.getScheme())) {
+            URL localFileURL = DexiConfig.class.getResource(uri.getPath());
+            localFilename = localFileURL.getFile();
+        }
+
+        return new File(localFilename);
+    }
+
     private static <T extends FileBasedConfiguration> Configuration getConfigurationFile(String fileLocation, Class<T> filedBasedClazz) throws ConfigurationException, URISyntaxException, MalformedURLException {
         T configuration = null;
 
@@ -138,13 +181,7 @@ public class DexiConfig {
             builder = builder.configure(properties.setURL(uri.toURL()));
             configuration = builder.getConfiguration();
         } else {
-            String localFilename = uri.getPath();
-            if ("classpath".equalsIgnoreCase(uri.getScheme())) {
-                URL localFileURL = DexiConfig.class.getResource(uri.getPath());
-                localFilename = localFileURL.getFile();
-            }
-
-            File localFile = new File(localFilename);
+            File localFile = getLocalFile(fileLocation);
             if (localFile.exists()) {
                 builder = builder.configure(properties.setFileName(localFile.getAbsolutePath()));
                 configuration = builder.getConfiguration();
@@ -155,27 +192,80 @@ public class DexiConfig {
         return configuration;
     }
 
-    private static void addConfigurationToProperties(Configuration configuration) {
+    private static void addConfigurationToProperties(Configuration configuration, Map<String, Object> values) {
         if (configuration != null) {
             Iterator<String> keys = configuration.getKeys();
             while (keys.hasNext()) {
                 String keyWithSection = keys.next();
 
-                String existingValue = properties.getProperty(keyWithSection);
-                if (existingValue == null) {
+                if (!values.containsKey(keyWithSection)) {
                     Object value = configuration.getProperty(keyWithSection);
-                    properties.put(keyWithSection, value);
+                    if (value != null) {
+                        values.put(keyWithSection, value);
+                    }
                 }
             }
         }
     }
 
-    private static void getConfigurationFromURL(String url) throws MalformedURLException, ConfigurationException, URISyntaxException {
-        Configuration ymlConfigurationURL = getConfigurationFile(url, YAMLConfiguration.class);
-        addConfigurationToProperties(ymlConfigurationURL);
+    private static void getConfigurationFromURL(String url, Map<String, Object> values, boolean refresh) throws MalformedURLException, ConfigurationException, URISyntaxException {
+        final DexiConfigUrlCache cache = getUrlCache();
+        if (cache == null) {
+            Configuration ymlConfigurationURL = getConfigurationFile(url, YAMLConfiguration.class);
+            addConfigurationToProperties(ymlConfigurationURL, values);
+            return;
+        }
+
+        if (cache.hasCachedCopy(url)) {
+            if (refresh) {
+                cache.refreshInBackground(url, DexiConfig::reloadFromCache);
+            }
+        } else {
+            try {
+                cache.fetch(url);
+            } catch (IOException e) {
+                throw new ConfigurationException("Unable to load the configuration from the URL " + url, e);
+            }
+        }
+
+        Configuration ymlConfigurationCached = getConfigurationFile(cache.getCachedFile(url).toURI().toString(), YAMLConfiguration.class);
+        addConfigurationToProperties(ymlConfigurationCached, values);
     }
 
-    private static void readLocalConfiguration(String fileLocation) throws MalformedURLException, ConfigurationException, URISyntaxException {
+    /**
+     * The cache for configuration read from a URL - or null unless a cache directory was given. Only called while
+     * loading, which is serialized.
+     */
+    private static DexiConfigUrlCache getUrlCache() {
+        String directory = System.getenv(ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_CACHE_NAME);
+        if (StringUtils.isEmpty(directory)) {
+            directory = System.getProperty(ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_CACHE_NAME);
+        }
+
+        if (StringUtils.isBlank(directory) || "none".equalsIgnoreCase(directory)) {
+            return null;
+        }
+
+        final File cacheDirectory = new File(directory);
+        if (urlCache == null || !urlCache.getDirectory().equals(cacheDirectory)) {
+            urlCache = new DexiConfigUrlCache(cacheDirectory);
+        }
+
+        return urlCache;
+    }
+
+    /**
+     * Called when a background refresh downloaded a new copy of the configuration
+     */
+    private static void reloadFromCache() {
+        try {
+            load(false);
+        } catch (Exception e) {
+            log.warn("Failed to reload configuration", e);
+        }
+    }
+
+    private static void readLocalConfiguration(String fileLocation, Map<String, Object> values) throws MalformedURLException, ConfigurationException, URISyntaxException {
         String fileExtension = fileLocation.substring(fileLocation.lastIndexOf(".") + 1);
 
         Class<? extends FileBasedConfiguration> configurationClass;
@@ -197,7 +287,7 @@ public class DexiConfig {
         }
 
         Configuration ymlConfigurationLocal = getConfigurationFile(fileLocation, configurationClass);
-        addConfigurationToProperties(ymlConfigurationLocal);
+        addConfigurationToProperties(ymlConfigurationLocal, values);
     }
 
     private static boolean isUrl(String fileLocation) {
@@ -205,39 +295,151 @@ public class DexiConfig {
         return urlMatcher.find();
     }
 
-    public static synchronized void load() throws ConfigurationException, URISyntaxException, MalformedURLException {
+    /**
+     * Reads the configuration and swaps it in. Loads are serialized - readers are never blocked.
+     */
+    public static void load() throws ConfigurationException, URISyntaxException, MalformedURLException {
+        load(true);
+    }
+
+    private static synchronized void load(boolean refresh) throws ConfigurationException, URISyntaxException, MalformedURLException {
         String fileLocation = System.getenv(ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_NAME);
         if (StringUtils.isEmpty(fileLocation)) {
             fileLocation = System.getProperty(ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_NAME);
         }
 
+        final Map<String, Object> values = new LinkedHashMap<>();
+        File source = null;
+
         if (StringUtils.isNotEmpty(fileLocation)) {
             if (isUrl(fileLocation)) {
-                getConfigurationFromURL(fileLocation);
+                getConfigurationFromURL(fileLocation, values, refresh);
             } else {
-                readLocalConfiguration(fileLocation);
+                readLocalConfiguration(fileLocation, values);
+                source = getLocalFile(fileLocation);
             }
         } else {
-            readLocalConfiguration(DEFAULT_CONFIG_FILE);
+            readLocalConfiguration(DEFAULT_CONFIG_FILE, values);
+            source = getLocalFile(DEFAULT_CONFIG_FILE);
+        }
+
+        readEnvironment(values);
+
+        final DexiConfigSnapshot current = new DexiConfigSnapshot(values, source);
+
+        // Bind registered sections before swapping in - so bad values fail the load and keep the previous configuration
+        for (DexiConfigSection<?> section : sections) {
+            try {
+                section.get(current);
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationException(e.getMessage(), e);
+            }
+        }
+
+        update(current);
+    }
+
+    private static void update(DexiConfigSnapshot current) {
+        final DexiConfigSnapshot previous = snapshot.getAndSet(current);
+        if (previous.equals(current)) {
+            return;
+        }
+
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.onChange(previous, current);
+            } catch (RuntimeException e) {
+                log.warn("Configuration change listener failed", e);
+            }
         }
+    }
 
-        readEnvironment();
+    /**
+     * The current configuration
+     */
+    public static DexiConfigSnapshot getSnapshot() {
+        return snapshot.get();
     }
 
+    /**
+     * A copy of the current configuration - changing it has no effect.
+     *
+     * @deprecated the configuration is no longer changed through the returned properties. Read it with
+     * {@link #getSnapshot()} and use {@link #reset()} to forget it.
+     */
+    @Deprecated
     public static Properties getProperties() {
-        return properties;
+        return snapshot.get().toProperties();
+    }
+
+    /**
+     * Forgets the loaded configuration - until the next {@link #load()}. Change listeners are called as for a load.
+     */
+    public static synchronized void reset() {
+        update(DexiConfigSnapshot.EMPTY);
     }
 
     public static String getBaseUrl() {
-        return properties.getProperty(CONFIG_KEY_BASE_URL, DEFAULT_BASE_URL);
+        return snapshot.get().getProperty(CONFIG_KEY_BASE_URL, DEFAULT_BASE_URL);
     }
 
     public static String getAccount() {
-        return properties.getProperty(CONFIG_KEY_ACCOUNT);
+        return snapshot.get().getProperty(CONFIG_KEY_ACCOUNT);
     }
 
     public static String getApiKey() {
-        return properties.getProperty(CONFIG_KEY_API_KEY);
+        return snapshot.get().getProperty(CONFIG_KEY_API_KEY);
+    }
+
+    /**
+     * Get a section of the current configuration bound to a POJO - see
+     * {@link DexiConfigSnapshot#getSection(String, Class)}
+     */
+    public static <T> T getSection(String section, Class<T> type) {
+        return snapshot.get().getSection(section, type);
+    }
+
+    /**
+     * Registers a section to be bound on every {@link #load()}. A load fails if the values of a registered section can
+     * not be converted, keeping the previous configuration.
+     *
+     * @throws IllegalArgumentException if the section can not be bound to the current configuration
+     */
+    public static <T> DexiConfigSection<T> registerSection(String section, Class<T> type) {
+        final DexiConfigSection<T> registered = new DexiConfigSection<>(section, type);
+        registered.get();
+        sections.add(registered);
+        return registered;
+    }
+
+    /**
+     * Listeners are called on the thread loading the configuration - whenever a load changes the configuration
+     */
+    public static void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reloads the configuration whenever the local configuration file read by the last {@link #load()} changes.
+     * Close the returned watcher to stop.
+     *
+     * @throws IllegalStateException if the configuration was not read from a local file
+     */
+    public static DexiConfigWatcher watch() throws IOException {
+        final File source = snapshot.get().getSource();
+        if (source == null) {
+            throw new IllegalStateException("Configuration was not read from a local file");
+        }
+
+        return new DexiConfigWatcher(source.getAbsoluteFile().toPath());
+    }
+
+    public interface ChangeListener {
+        void onChange(DexiConfigSnapshot previous, DexiConfigSnapshot current);
     }
 
 }
@@ -0,0 +1,66 @@
+package io.dexi.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts the values of a configuration section to a POJO.
+ *
+ * All values are converted when binding - so reading the bound object never parses anything. Keys with more dots,
+ * like {@code google.oauth.scope}, are bound as nested objects.
+ */
+final class DexiConfigBinder {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+
+    private DexiConfigBinder() {
+    }
+
+    static <T> T bind(Map<String, Object> values, String section, Class<T> type) {
+        if (type.isInterface()) {
+            throw new IllegalArgumentException("Configuration section " + section + " must be bound to a class, not " + type.getName());
+        }
+
+        final Map<String, Object> tree = toTree(values, section + ".");
+
+        try {
+            return objectMapper.convertValue(tree, type);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Failed to bind configuration section " + section + " to " + type.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toTree(Map<String, Object> values, String prefix) {
+        final Map<String, Object> tree = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                continue;
+            }
+
+            final String[] path = entry.getKey().substring(prefix.length()).split("\\.");
+            Map<String, Object> current = tree;
+            for (int i = 0; i < path.length - 1; i++) {
+                Object child = current.get(path[i]);
+                if (!(child instanceof Map)) {
+                    child = new LinkedHashMap<String, Object>();
+                    current.put(path[i], child);
+                }
+                current = (Map<String, Object>) child;
+            }
+
+            // Nested keys win over a plain value of the same name
+            if (!(current.get(path[path.length - 1]) instanceof Map)) {
+                current.put(path[path.length - 1], entry.getValue());
+            }
+        }
+
+        return tree;
+    }
+}
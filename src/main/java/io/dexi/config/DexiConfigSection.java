@@ -0,0 +1,57 @@
+package io.dexi.config;
+
+/**
+ * A configuration section bound to a POJO - see {@link DexiConfig#registerSection(String, Class)}.
+ *
+ * {@link #get()} returns the section bound to the current configuration. The bound instance is remembered until the
+ * configuration is reloaded, so reading a section on a hot path costs a couple of field reads. The instance is shared
+ * - treat it as read-only.
+ */
+public final class DexiConfigSection<T> {
+
+    private final String section;
+
+    private final Class<T> type;
+
+    private volatile Bound<T> bound;
+
+    DexiConfigSection(String section, Class<T> type) {
+        this.section = section;
+        this.type = type;
+    }
+
+    public String getSection() {
+        return section;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public T get() {
+        return get(DexiConfig.getSnapshot());
+    }
+
+    T get(DexiConfigSnapshot snapshot) {
+        final Bound<T> current = bound;
+        if (current != null && current.snapshot == snapshot) {
+            return current.value;
+        }
+
+        final T value = snapshot.getSection(section, type);
+        bound = new Bound<>(snapshot, value);
+        return value;
+    }
+
+    private static final class Bound<T> {
+
+        private final DexiConfigSnapshot snapshot;
+
+        private final T value;
+
+        private Bound(DexiConfigSnapshot snapshot, T value) {
+            this.snapshot = snapshot;
+            this.value = value;
+        }
+    }
+}
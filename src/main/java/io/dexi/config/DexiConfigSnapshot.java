@@ -0,0 +1,146 @@
+package io.dexi.config;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable view of the configuration as read by one {@link DexiConfig#load()}. Keys are {@code section.key}.
+ */
+public final class DexiConfigSnapshot {
+
+    static final DexiConfigSnapshot EMPTY = new DexiConfigSnapshot(ImmutableMap.of(), null);
+
+    private final ImmutableMap<String, Object> values;
+
+    private final File source;
+
+    private final ConcurrentMap<SectionKey, Object> sections = new ConcurrentHashMap<>();
+
+    DexiConfigSnapshot(Map<String, Object> values, File source) {
+        this.values = ImmutableMap.copyOf(values);
+        this.source = source;
+    }
+
+    /**
+     * Get the value of a key - a string for most keys, but could be a list or similar for some file formats
+     */
+    public Object get(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Get a string value - same as {@link Properties#getProperty(String)}: null if missing or not a string
+     */
+    public String getProperty(String key) {
+        final Object value = values.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public String getProperty(String key, String defaultValue) {
+        final String value = getProperty(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public Set<String> keySet() {
+        return values.keySet();
+    }
+
+    public Map<String, Object> asMap() {
+        return values;
+    }
+
+    /**
+     * The local configuration file read - null if the configuration was read from a URL or no file was found
+     */
+    public File getSource() {
+        return source;
+    }
+
+    /**
+     * Get a section bound to a POJO - e.g. {@code getSection("google", GoogleConfig.class)} for the {@code google.*}
+     * keys. Sections are bound once per snapshot: all values are converted up front and later calls return the same
+     * instance - reading it is plain field access.
+     *
+     * The instance is shared by everyone reading the section of the snapshot - treat it as read-only. Changes are
+     * visible to other readers until the next load.
+     *
+     * @throws IllegalArgumentException if a value can not be converted - or the type is an interface
+     */
+    public <T> T getSection(String section, Class<T> type) {
+        final SectionKey key = new SectionKey(section, type);
+        Object bound = sections.get(key);
+        if (bound == null) {
+            bound = DexiConfigBinder.bind(values, section, type);
+            final Object existing = sections.putIfAbsent(key, bound);
+            if (existing != null) {
+                bound = existing;
+            }
+        }
+
+        return type.cast(bound);
+    }
+
+    /**
+     * A mutable copy of the configuration
+     */
+    public Properties toProperties() {
+        final Properties properties = new Properties();
+        properties.putAll(values);
+        return properties;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof DexiConfigSnapshot)) {
+            return false;
+        }
+
+        return values.equals(((DexiConfigSnapshot) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+
+    private static final class SectionKey {
+
+        private final String section;
+
+        private final Class<?> type;
+
+        private SectionKey(String section, Class<?> type) {
+            this.section = section;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof SectionKey)) {
+                return false;
+            }
+
+            final SectionKey other = (SectionKey) o;
+            return type == other.type && section.equals(other.section);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * section.hashCode() + type.hashCode();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package io.dexi.config;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a local copy of configuration files read from a URL - so nodes can start from the local copy while the
+ * configuration is revalidated in the background, and keep working while the configuration host is down.
+ *
+ * Copies are revalidated using {@code ETag} / {@code If-None-Match} and {@code Last-Modified} /
+ * {@code If-Modified-Since}, so unchanged configuration is not downloaded again.
+ *
+ * The configuration usually holds credentials, which are persisted in the copies. The directory and files are only
+ * readable by the owner - 0700 and 0600 - where the file system supports it.
+ */
+final class DexiConfigUrlCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DexiConfigUrlCache.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
+    private static final String META_ETAG = "etag";
+
+    private static final String META_LAST_MODIFIED = "lastModified";
+
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private static final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("dexi-config-refresh-%d")
+            .setDaemon(true)
+            .build());
+
+    private final File directory;
+
+    DexiConfigUrlCache(File directory) {
+        this.directory = directory;
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * The local copy of the configuration at the URL - which may not exist yet
+     */
+    File getCachedFile(String url) {
+        return new File(directory, name(url) + ".yml");
+    }
+
+    boolean hasCachedCopy(String url) {
+        return getCachedFile(url).isFile();
+    }
+
+    /**
+     * Downloads the configuration - if changed since the local copy was downloaded
+     *
+     * @return true if a new copy was downloaded
+     */
+    boolean fetch(String url) throws IOException {
+        final File cached = getCachedFile(url);
+        final File metaFile = new File(directory, name(url) + ".properties");
+        final Properties meta = readMeta(metaFile, cached);
+
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            connection.setUseCaches(false);
+            if (meta.getProperty(META_ETAG) != null) {
+                connection.setRequestProperty("If-None-Match", meta.getProperty(META_ETAG));
+            }
+            if (meta.getProperty(META_LAST_MODIFIED) != null) {
+                connection.setRequestProperty("If-Modified-Since", meta.getProperty(META_LAST_MODIFIED));
+            }
+
+            final int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached.isFile()) {
+                log.debug("Configuration at {} not modified", url);
+                return false;
+            }
+
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Failed to get configuration from " + url + ", status: " + status);
+            }
+
+            createDirectory();
+
+            try (InputStream in = connection.getInputStream()) {
+                write(cached.toPath(), in);
+            }
+
+            writeMeta(metaFile, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+            log.debug("Downloaded configuration from {}", url);
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Revalidates the local copy on a background thread - calling the callback if a new copy was downloaded
+     */
+    void refreshInBackground(String url, Runnable onChange) {
+        refreshExecutor.execute(() -> {
+            try {
+                if (fetch(url)) {
+                    onChange.run();
+                }
+            } catch (Exception e) {
+                log.warn("Failed to refresh configuration from {} - using local copy", url, e);
+            }
+        });
+    }
+
+    private Properties readMeta(File metaFile, File cached) {
+        final Properties meta = new Properties();
+        if (!cached.isFile() || !metaFile.isFile()) {
+            return meta;
+        }
+
+        try (Reader reader = Files.newBufferedReader(metaFile.toPath(), StandardCharsets.UTF_8)) {
+            meta.load(reader);
+        } catch (IOException e) {
+            log.debug("Failed to read {}", metaFile, e);
+        }
+        return meta;
+    }
+
+    private void writeMeta(File metaFile, String etag, String lastModified) {
+        final Properties meta = new Properties();
+        if (etag != null) {
+            meta.setProperty(META_ETAG, etag);
+        }
+        if (lastModified != null) {
+            meta.setProperty(META_LAST_MODIFIED, lastModified);
+        }
+
+        try {
+            final StringWriter writer = new StringWriter();
+            meta.store(writer, null);
+            write(metaFile.toPath(), new ByteArrayInputStream(writer.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            log.warn("Failed to write {}", metaFile, e);
+        }
+    }
+
+    private void createDirectory() throws IOException {
+        final Path path = directory.toPath();
+        if (isPosix(path.getFileSystem())) {
+            Files.createDirectories(path, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+            Files.setPosixFilePermissions(path, OWNER_ONLY_DIRECTORY);
+        } else {
+            Files.createDirectories(path);
+        }
+    }
+
+    /**
+     * Writes through a temporary file - readers never see a partial copy. Temporary files are created readable by
+     * the owner only, and the permissions are kept by the move.
+     */
+    private void write(Path target, InputStream in) throws IOException {
+        final Path temp = isPosix(target.getFileSystem())
+                ? Files.createTempFile(directory.toPath(), target.getFileName().toString(), ".tmp",
+                        PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE))
+                : Files.createTempFile(directory.toPath(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static boolean isPosix(FileSystem fileSystem) {
+        return fileSystem.supportedFileAttributeViews().contains("posix");
+    }
+
+    private static String name(String url) {
+        return Hashing.sha256().hashString(url, StandardCharsets.UTF_8).toString().substring(0, 32);
+    }
+}
@@ -0,0 +1,103 @@
+package io.dexi.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads {@link DexiConfig} on a background thread when the local configuration file changes.
+ *
+ * Changes arriving in quick succession - editors often write a file in several steps - result in a single reload.
+ * If a reload fails the previous configuration is kept.
+ *
+ * @see DexiConfig#watch()
+ */
+public final class DexiConfigWatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DexiConfigWatcher.class);
+
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path file;
+
+    private final WatchService watchService;
+
+    private final Thread worker;
+
+    DexiConfigWatcher(Path file) throws IOException {
+        this.file = file;
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        // Watch the directory - editors and deployment tools often replace the file rather than write to it
+        file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.worker = new Thread(this::run, "dexi-config-watcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.debug("Failed to close watch service", e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+
+                // Collect events until the file has settled
+                while (key != null) {
+                    changed |= isFileEvent(key);
+                    key.reset();
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.debug("Stopped watching {}", file);
+        }
+    }
+
+    private boolean isFileEvent(WatchKey key) {
+        boolean match = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                match = true;
+            }
+        }
+        return match;
+    }
+
+    private void reload() {
+        try {
+            DexiConfig.load();
+            log.info("Reloaded configuration from {}", file);
+        } catch (Exception e) {
+            log.warn("Failed to reload configuration from {} - keeping previous configuration", file, e);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package io.dexi.oauth;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes OAuth2 tokens ahead of their expiry, so requests never have to pay for a refresh.
+ *
+ * Tokens are tracked by an id of your choosing - such as the id of the connection they belong to. Each token is
+ * refreshed a little while before it expires, spread out with a random jitter so tokens issued at the same time are
+ * not all refreshed at once. The actual refresh is done by your {@link Refresher}, and the refreshed - and encrypted -
+ * tokens are handed to your {@link Listener} to be persisted. A token never has more than one refresh in flight.
+ *
+ * Expiry is tracked on a timer wheel with a tick of one second, so very large numbers of tokens can be tracked
+ * cheaply.
+ */
+public class OAuth2RefreshScheduler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OAuth2RefreshScheduler.class);
+
+    private static final long DEFAULT_REFRESH_AHEAD_SECONDS = 300;
+
+    private static final long DEFAULT_JITTER_SECONDS = 60;
+
+    private static final long RETRY_DELAY_SECONDS = 30;
+
+    /**
+     * Short-lived tokens are refreshed no earlier than this share of their lifetime - and never sooner than
+     * {@link #MIN_REFRESH_DELAY_SECONDS} - so they can not end up refreshing back to back
+     */
+    private static final double MIN_LIFETIME_SHARE = 0.5;
+
+    private static final long MIN_REFRESH_DELAY_SECONDS = 10;
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final OAuthEncryptionService encryptionService;
+
+    private final Refresher refresher;
+
+    private final Listener listener;
+
+    private final long refreshAheadSeconds;
+
+    private final long jitterSeconds;
+
+    private final ExecutorService executor;
+
+    private final TimerWheel timer;
+
+    private final ConcurrentMap<String, Scheduled> scheduled = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, CompletableFuture<EncryptedOAuthTokens>> inFlight = new ConcurrentHashMap<>();
+
+    public OAuth2RefreshScheduler(OAuthEncryptionService encryptionService, Refresher refresher, Listener listener) {
+        this(encryptionService, refresher, listener, DEFAULT_REFRESH_AHEAD_SECONDS, DEFAULT_JITTER_SECONDS, 4);
+    }
+
+    /**
+     * @param refreshAheadSeconds refresh tokens this many seconds before they expire
+     * @param jitterSeconds refresh up to this many seconds earlier still - chosen at random for each token
+     * @param refreshThreads number of threads running refreshes
+     */
+    public OAuth2RefreshScheduler(OAuthEncryptionService encryptionService, Refresher refresher, Listener listener,
+                                  long refreshAheadSeconds, long jitterSeconds, int refreshThreads) {
+        this.encryptionService = encryptionService;
+        this.refresher = refresher;
+        this.listener = listener;
+        this.refreshAheadSeconds = refreshAheadSeconds;
+        this.jitterSeconds = jitterSeconds;
+
+        this.executor = Executors.newFixedThreadPool(refreshThreads, new ThreadFactoryBuilder()
+                .setNameFormat("dexi-oauth-refresh-%d")
+                .setDaemon(true)
+                .build());
+
+        // Expired timeouts only hand the refresh to the executor, so they can run directly on the timer thread
+        this.timer = new TimerWheel("dexi-oauth-refresh-timer", 1, TimeUnit.SECONDS, WHEEL_SIZE,
+                MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Starts tracking the expiry of tokens - replacing any tokens already tracked with the same id. Tokens are
+     * considered issued now, so they expire {@link EncryptedOAuthTokens#getExpiresInSeconds()} from now.
+     *
+     * @return false if the tokens can not be refreshed - because they do not expire or have no payload
+     */
+    public boolean schedule(String tokenId, EncryptedOAuthTokens tokens) {
+        if (tokens.getExpiresInSeconds() == null || StringUtils.isBlank(tokens.getPayload())) {
+            cancel(tokenId);
+            return false;
+        }
+
+        final long delay = getRefreshDelaySeconds(tokens.getExpiresInSeconds());
+        final long expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(tokens.getExpiresInSeconds());
+
+        schedule(tokenId, tokens, expiresAt, delay);
+        return true;
+    }
+
+    /**
+     * Seconds until tokens expiring in {@code expiresInSeconds} are refreshed: the refresh ahead time and a random
+     * jitter before expiry - but no earlier than half way through the lifetime of the tokens, and at least
+     * {@link #MIN_REFRESH_DELAY_SECONDS} from now.
+     */
+    long getRefreshDelaySeconds(long expiresInSeconds) {
+        final long jitter = jitterSeconds > 0 ? ThreadLocalRandom.current().nextLong(jitterSeconds + 1) : 0;
+        final long delay = expiresInSeconds - refreshAheadSeconds - jitter;
+        final long earliest = Math.max(MIN_REFRESH_DELAY_SECONDS, (long) (expiresInSeconds * MIN_LIFETIME_SHARE));
+
+        return Math.max(delay, earliest);
+    }
+
+    /**
+     * Stops tracking the tokens. A refresh already in flight still completes.
+     */
+    public void cancel(String tokenId) {
+        final Scheduled removed = scheduled.remove(tokenId);
+        if (removed != null) {
+            removed.cancel();
+        }
+    }
+
+    /**
+     * Refreshes tracked tokens right away - or joins the refresh already in flight
+     *
+     * @return the refreshed tokens - or null if no tokens are tracked by that id
+     */
+    public CompletableFuture<EncryptedOAuthTokens> refresh(String tokenId) {
+        final Scheduled current = scheduled.get(tokenId);
+        if (current == null) {
+            return null;
+        }
+
+        return refresh(tokenId, current);
+    }
+
+    public int size() {
+        return scheduled.size();
+    }
+
+    @Override
+    public void close() {
+        timer.close();
+        executor.shutdownNow();
+        scheduled.clear();
+    }
+
+    private void schedule(String tokenId, EncryptedOAuthTokens tokens, long expiresAt, long delaySeconds) {
+        final Scheduled entry = new Scheduled(tokens, expiresAt);
+
+        final Scheduled replaced = scheduled.put(tokenId, entry);
+        if (replaced != null) {
+            replaced.cancel();
+        }
+
+        // The entry check makes timeouts of replaced or cancelled entries harmless - cancelling just frees them early
+        entry.timeout = timer.schedule(() -> {
+            if (scheduled.get(tokenId) == entry) {
+                refresh(tokenId, entry);
+            }
+        }, delaySeconds, TimeUnit.SECONDS);
+    }
+
+    private CompletableFuture<EncryptedOAuthTokens> refresh(String tokenId, Scheduled entry) {
+        final CompletableFuture<EncryptedOAuthTokens> future = new CompletableFuture<>();
+
+        final CompletableFuture<EncryptedOAuthTokens> existing = inFlight.putIfAbsent(tokenId, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(doRefresh(tokenId, entry));
+                } catch (Exception e) {
+                    onRefreshFailed(tokenId, entry, e);
+                    future.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(tokenId, future);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(tokenId, future);
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private EncryptedOAuthTokens doRefresh(String tokenId, Scheduled entry) throws Exception {
+        final OAuth2Tokens current = encryptionService.decrypt(entry.tokens);
+
+        final OAuth2Tokens refreshed = refresher.refresh(current);
+        if (refreshed == null) {
+            throw new IllegalStateException("Refresher returned no tokens for " + tokenId);
+        }
+
+        // Providers usually leave out the refresh token when it has not changed
+        if (refreshed.getRefreshToken() == null) {
+            refreshed.setRefreshToken(current.getRefreshToken());
+        }
+
+        final EncryptedOAuthTokens encrypted = encryptionService.encrypt(refreshed);
+        encrypted.setScope(refreshed.getScope() != null ? refreshed.getScope() : entry.tokens.getScope());
+        encrypted.setExpiresInSeconds(refreshed.getExpiresInSeconds());
+
+        // Only keep tracking the tokens if they were not cancelled or replaced while refreshing
+        if (scheduled.get(tokenId) == entry) {
+            schedule(tokenId, encrypted);
+        }
+
+        listener.onRefreshed(tokenId, encrypted);
+
+        return encrypted;
+    }
+
+    private void onRefreshFailed(String tokenId, Scheduled entry, Exception e) {
+        final boolean expired = System.nanoTime() - entry.expiresAt >= 0;
+        log.warn("Failed to refresh OAuth2 tokens for {}{}", tokenId, expired ? " - tokens have expired" : "", e);
+
+        try {
+            listener.onRefreshFailed(tokenId, e);
+        } catch (RuntimeException listenerException) {
+            log.warn("Refresh failure listener failed for {}", tokenId, listenerException);
+        }
+
+        if (expired) {
+            scheduled.remove(tokenId, entry);
+        } else if (scheduled.get(tokenId) == entry) {
+            schedule(tokenId, entry.tokens, entry.expiresAt, RETRY_DELAY_SECONDS);
+        }
+    }
+
+    /**
+     * Performs the actual refresh with the OAuth2 provider
+     */
+    public interface Refresher {
+        /**
+         * @param tokens the current - decrypted - tokens
+         * @return the refreshed tokens. If no refresh token is set the current refresh token is kept.
+         */
+        OAuth2Tokens refresh(OAuth2Tokens tokens) throws Exception;
+    }
+
+    public interface Listener {
+        /**
+         * Called with the refreshed tokens - which should be persisted
+         */
+        void onRefreshed(String tokenId, EncryptedOAuthTokens tokens);
+
+        /**
+         * Called when a refresh failed. The refresh is retried until the tokens expire.
+         */
+        default void onRefreshFailed(String tokenId, Exception e) {}
+    }
+
+    private static class Scheduled {
+
+        private final EncryptedOAuthTokens tokens;
+
+        private final long expiresAt;
+
+        private volatile TimerWheel.Timeout timeout;
+
+        private Scheduled(EncryptedOAuthTokens tokens, long expiresAt) {
+            this.tokens = tokens;
+            this.expiresAt = expiresAt;
+        }
+
+        private void cancel() {
+            final TimerWheel.Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+}
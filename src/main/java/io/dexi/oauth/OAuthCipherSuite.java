@@ -0,0 +1,120 @@
+package io.dexi.oauth;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * Authenticated ciphers available for encrypting OAuth token payloads.
+ *
+ * The id of the suite is written into every payload, so a service can always decrypt payloads made with any
+ * supported suite - regardless of which suite it uses for encrypting new payloads.
+ */
+public enum OAuthCipherSuite {
+
+    /**
+     * AES in Galois/Counter mode. Hardware accelerated on most server CPUs - and the default.
+     */
+    AES_GCM((byte) 1, "AES/GCM/NoPadding", "AES", 12) {
+        @Override
+        AlgorithmParameterSpec parameterSpec(byte[] nonce, int offset) {
+            return new GCMParameterSpec(128, nonce, offset, getNonceLength());
+        }
+
+        @Override
+        boolean isValidKeyLength(int keyLength) {
+            return keyLength == 16 || keyLength == 24 || keyLength == 32;
+        }
+    },
+
+    /**
+     * ChaCha20 with Poly1305. Fast in software on CPUs without AES instructions.
+     * Requires a 32 byte key and a JDK that provides it (11+).
+     */
+    CHACHA20_POLY1305((byte) 2, "ChaCha20-Poly1305", "ChaCha20", 12) {
+        @Override
+        AlgorithmParameterSpec parameterSpec(byte[] nonce, int offset) {
+            return new IvParameterSpec(nonce, offset, getNonceLength());
+        }
+
+        @Override
+        boolean isValidKeyLength(int keyLength) {
+            return keyLength == 32;
+        }
+
+        @Override
+        boolean allowsRepeatedInit() {
+            return false;
+        }
+    };
+
+    private final byte id;
+
+    private final String transformation;
+
+    private final String keyAlgorithm;
+
+    private final int nonceLength;
+
+    OAuthCipherSuite(byte id, String transformation, String keyAlgorithm, int nonceLength) {
+        this.id = id;
+        this.transformation = transformation;
+        this.keyAlgorithm = keyAlgorithm;
+        this.nonceLength = nonceLength;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    public String getTransformation() {
+        return transformation;
+    }
+
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    public int getNonceLength() {
+        return nonceLength;
+    }
+
+    /**
+     * Determines if the running JDK provides this cipher suite
+     */
+    public boolean isSupported() {
+        try {
+            Cipher.getInstance(transformation);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    abstract AlgorithmParameterSpec parameterSpec(byte[] nonce, int offset);
+
+    abstract boolean isValidKeyLength(int keyLength);
+
+    /**
+     * Whether a cipher instance may be initialized again with the same key and nonce as its previous initialization
+     */
+    boolean allowsRepeatedInit() {
+        return true;
+    }
+
+    /**
+     * Get suite from the id written into payloads
+     *
+     * @return the suite or null if no suite has that id
+     */
+    public static OAuthCipherSuite fromId(byte id) {
+        for (OAuthCipherSuite suite : values()) {
+            if (suite.id == id) {
+                return suite;
+            }
+        }
+
+        return null;
+    }
+}
@@ -1,39 +1,127 @@
 package io.dexi.oauth;
 
 
-import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringUtils;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encrypts and decrypts OAuth tokens so they can be stored by dexi without exposing the secrets.
+ *
+ * Payloads are encrypted with an authenticated cipher suite (AES-GCM by default) and written in a versioned format:
+ * <pre>
+ *     v2:base64(suite id | key id length | key id | nonce | ciphertext and tag)
+ * </pre>
+ * Everything in front of the nonce is authenticated along with the ciphertext. The plaintext holds the two secrets of
+ * the tokens length-prefixed, see {@link OAuthTokenCodec}.
+ *
+ * A service can hold several keys identified by a key id. New payloads are always encrypted with the active key,
+ * while payloads are decrypted with whichever key their key id names - so keys can be rotated without a flag day,
+ * see {@link OAuthKeyRotation}. Payloads without a key id - {@code v1:base64(suite id | nonce | ciphertext and tag)}
+ * and those made by earlier versions of the SDK (plain AES in ECB mode, without any prefix) - are decrypted with the
+ * key registered as {@link #DEFAULT_KEY_ID}.
+ *
+ * Instances are safe for concurrent use. {@link Cipher} instances are not thread-safe, so every thread gets its own
+ * ciphers instead of sharing a single instance behind a lock.
+ */
 public class OAuthEncryptionService {
 
-    private static final String ALGORITHM = "AES";
+    /**
+     * Key id of the key given to the single key constructors - and the key used for payloads without a key id
+     */
+    public static final String DEFAULT_KEY_ID = "default";
+
+    private static final String LEGACY_ALGORITHM = "AES";
+
+    static final String PAYLOAD_PREFIX = "v2:";
+
+    static final String PAYLOAD_PREFIX_V1 = "v1:";
+
+    private static final int TAG_LENGTH = 16;
+
+    private static final int MAX_KEY_ID_LENGTH = 255;
+
+    private static final char LEGACY_SEPARATOR = ':';
+
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
 
     private final String encryptionKey;
 
-    private final Cipher encryptCipher;
+    private final OAuthCipherSuite cipherSuite;
+
+    private final EncryptionKey activeKey;
+
+    private final EncryptionKey[] keys;
 
-    private final Cipher decryptCipher;
+    private final EncryptionKey defaultKey;
+
+    private final ThreadLocal<CipherState> cipherState = ThreadLocal.withInitial(CipherState::new);
+
+    private volatile OAuthTokenCache tokenCache;
 
     public OAuthEncryptionService(String encryptionKey) {
-        if (StringUtils.isBlank(encryptionKey)) {
+        this(encryptionKey, OAuthCipherSuite.AES_GCM);
+    }
+
+    public OAuthEncryptionService(String encryptionKey, OAuthCipherSuite cipherSuite) {
+        this(Collections.singletonMap(DEFAULT_KEY_ID, encryptionKey), DEFAULT_KEY_ID, cipherSuite);
+    }
+
+    /**
+     * @param encryptionKeys all keys that payloads can be decrypted with - by key id
+     * @param activeKeyId the id of the key new payloads are encrypted with
+     * @param cipherSuite the cipher suite new payloads are encrypted with
+     */
+    public OAuthEncryptionService(Map<String, String> encryptionKeys, String activeKeyId, OAuthCipherSuite cipherSuite) {
+        if (encryptionKeys == null || StringUtils.isBlank(encryptionKeys.get(activeKeyId))) {
             throw new IllegalArgumentException("Encryption key is required for the encryption service to work");
         }
-        this.encryptionKey = encryptionKey;
+        if (cipherSuite == null) {
+            throw new IllegalArgumentException("Cipher suite is required for the encryption service to work");
+        }
+        if (!cipherSuite.isSupported()) {
+            throw new IllegalArgumentException("Cipher suite " + cipherSuite + " is not supported by this JVM");
+        }
+        this.encryptionKey = encryptionKeys.get(activeKeyId);
+        this.cipherSuite = cipherSuite;
 
         this.checkKey();
 
-        SecretKeySpec secretKey = new SecretKeySpec(encryptionKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        final Map<String, EncryptionKey> keysById = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : encryptionKeys.entrySet()) {
+            if (StringUtils.isBlank(entry.getValue())) {
+                throw new IllegalArgumentException("Encryption key is missing for key id: " + entry.getKey());
+            }
+            keysById.put(entry.getKey(), new EncryptionKey(entry.getKey(), entry.getValue()));
+        }
 
-        encryptCipher = getCipher(Cipher.ENCRYPT_MODE, secretKey);
+        this.keys = keysById.values().toArray(new EncryptionKey[keysById.size()]);
+        this.activeKey = keysById.get(activeKeyId);
+        this.defaultKey = keysById.get(DEFAULT_KEY_ID);
 
-        decryptCipher = getCipher(Cipher.DECRYPT_MODE, secretKey);
+        if (!cipherSuite.isValidKeyLength(activeKey.length)) {
+            throw new IllegalArgumentException("Invalid key length: " + activeKey.length + " for cipher suite " + cipherSuite);
+        }
     }
 
     public void checkKey() {
+        checkKey(encryptionKey);
+    }
+
+    private static void checkKey(String encryptionKey) {
         int keyLength = encryptionKey.getBytes().length;
         switch (keyLength) {
             case 16:
@@ -45,21 +133,63 @@ public class OAuthEncryptionService {
         throw new RuntimeException("Invalid key length: " + keyLength + ". Must be 16, 24 or 32");
     }
 
-    private String encrypt(String value) {
-        return Base64.encodeBase64String(doFinal(encryptCipher, value.getBytes(StandardCharsets.UTF_8)));
+    public String getActiveKeyId() {
+        return activeKey.id;
+    }
+
+    public Set<String> getKeyIds() {
+        final Set<String> ids = new LinkedHashSet<>();
+        for (EncryptionKey key : keys) {
+            ids.add(key.id);
+        }
+
+        return Collections.unmodifiableSet(ids);
+    }
+
+    public OAuthCipherSuite getCipherSuite() {
+        return cipherSuite;
+    }
+
+    public OAuthTokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    /**
+     * Cache decrypted tokens - so decrypting the same payload again skips the cipher. Set to null to disable.
+     */
+    public void setTokenCache(OAuthTokenCache tokenCache) {
+        this.tokenCache = tokenCache;
     }
+
+    /**
+     * Decrypts a payload into its plaintext. Payloads made by earlier versions of the SDK hold the secrets joined by a
+     * colon and are returned as is - newer payloads are returned in the same format.
+     *
+     * @deprecated secrets containing a colon cannot be told apart - use {@link #decryptSecrets(String)}
+     */
+    @Deprecated
     public String decrypt(String cipherText) {
-        final byte[] bytes = Base64.decodeBase64(cipherText);
+        if (!cipherText.startsWith(PAYLOAD_PREFIX) && !cipherText.startsWith(PAYLOAD_PREFIX_V1)) {
+            final byte[] plaintext = decryptPlaintext(cipherText);
+            try {
+                return new String(plaintext, StandardCharsets.UTF_8);
+            } finally {
+                Arrays.fill(plaintext, (byte) 0);
+            }
+        }
+
+        final String[] secrets = decryptSecrets(cipherText);
+        if (secrets == null) {
+            throw new RuntimeException("Failed to process cipher: payload does not hold a pair of secrets");
+        }
 
-        return new String(doFinal(decryptCipher, bytes), StandardCharsets.UTF_8);
+        return secrets[0] + LEGACY_SEPARATOR + secrets[1];
     }
 
     public EncryptedOAuthTokens encrypt(OAuth2Tokens tokens) {
         EncryptedOAuthTokens out = new EncryptedOAuthTokens(tokens);
 
-        String unencryptedPayload = String.format("%s:%s", tokens.getAccessToken(), tokens.getRefreshToken());
-
-        out.setPayload(encrypt(unencryptedPayload));
+        out.setPayload(encryptSecrets(tokens.getAccessToken(), tokens.getRefreshToken()));
 
         return out;
     }
@@ -67,9 +197,7 @@ public class OAuthEncryptionService {
     public EncryptedOAuthTokens encrypt(OAuth1Tokens tokens) {
         EncryptedOAuthTokens out = new EncryptedOAuthTokens(tokens);
 
-        String unencryptedPayload = String.format("%s:%s", tokens.getAccessToken(), tokens.getAccessTokenSecret());
-
-        out.setPayload(encrypt(unencryptedPayload));
+        out.setPayload(encryptSecrets(tokens.getAccessToken(), tokens.getAccessTokenSecret()));
 
         return out;
     }
@@ -78,13 +206,11 @@ public class OAuthEncryptionService {
         OAuth2Tokens out = new OAuth2Tokens(tokens);
 
         if (StringUtils.isNotBlank(tokens.getPayload())) {
-            String unencryptedPayload = decrypt(tokens.getPayload());
+            String[] secrets = decryptSecrets(tokens);
 
-            String[] parts = unencryptedPayload.split(":");
-
-            if (parts.length == 2) {
-                out.setAccessToken(parts[0]);
-                out.setRefreshToken(parts[1]);
+            if (secrets != null) {
+                out.setAccessToken(secrets[0]);
+                out.setRefreshToken(secrets[1]);
             }
         }
 
@@ -95,34 +221,343 @@ public class OAuthEncryptionService {
         OAuth1Tokens out = new OAuth1Tokens(tokens);
 
         if (StringUtils.isNotBlank(tokens.getPayload())) {
-            String unencryptedPayload = decrypt(tokens.getPayload());
-
-            String[] parts = unencryptedPayload.split(":");
+            String[] secrets = decryptSecrets(tokens);
 
-            if (parts.length == 2) {
-                out.setAccessToken(parts[0]);
-                out.setAccessTokenSecret(parts[1]);
+            if (secrets != null) {
+                out.setAccessToken(secrets[0]);
+                out.setAccessTokenSecret(secrets[1]);
             }
         }
 
         return out;
     }
 
-    private byte[] doFinal(Cipher cipher, byte[] value) {
+    /**
+     * Re-encrypts a payload with the active key and cipher suite, without decoding the secrets it holds.
+     *
+     * @return the new payload - or the same instance if the payload was already encrypted with the active key and
+     *          cipher suite
+     */
+    public String reencrypt(String cipherText) {
+        if (cipherText.startsWith(PAYLOAD_PREFIX)) {
+            final ByteBuffer payload = decodeBase64(cipherText, PAYLOAD_PREFIX.length());
+            final byte[] bytes = payload.array();
+            if (payload.remaining() > 1 && bytes[0] == cipherSuite.getId() && activeKey.matches(bytes, 2, bytes[1] & 0xFF)) {
+                return cipherText;
+            }
+        }
+
+        final byte[] plaintext = decryptPlaintext(cipherText);
+        try {
+            return encodePayload(encryptPayload(plaintext));
+        } finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+    }
+
+    private String encryptSecrets(String first, String second) {
+        final byte[] plaintext = OAuthTokenCodec.encode(first, second);
+        try {
+            return encodePayload(encryptPayload(plaintext));
+        } finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+    }
+
+    private String[] decryptSecrets(EncryptedOAuthTokens tokens) {
+        final OAuthTokenCache cache = tokenCache;
+        if (cache == null) {
+            return decryptSecrets(tokens.getPayload());
+        }
+
+        return cache.get(tokens.getPayload(), tokens.getExpiresInSeconds(), this::decryptSecrets);
+    }
+
+    /**
+     * Decrypts a payload into the two secrets it holds - access token and refresh token / token secret
+     *
+     * @return the two secrets of the payload - or null if the payload did not contain a valid pair
+     */
+    public String[] decryptSecrets(String cipherText) {
+        final byte[] plaintext = decryptPlaintext(cipherText);
+        try {
+            return OAuthTokenCodec.decode(plaintext);
+        } finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+    }
+
+    private byte[] decryptPlaintext(String cipherText) {
+        if (cipherText.startsWith(PAYLOAD_PREFIX)) {
+            final ByteBuffer payload = decodeBase64(cipherText, PAYLOAD_PREFIX.length());
+            return decryptPayload(payload.array(), payload.remaining(), true);
+        }
+
+        if (cipherText.startsWith(PAYLOAD_PREFIX_V1)) {
+            final byte[] payload = decodeBase64Lenient(cipherText.substring(PAYLOAD_PREFIX_V1.length()));
+            return decryptPayload(payload, payload.length, false);
+        }
+
+        return decryptLegacyPayload(decodeBase64Lenient(cipherText));
+    }
+
+    private String encodePayload(byte[] payload) {
+        return PAYLOAD_PREFIX + BASE64_ENCODER.encodeToString(payload);
+    }
+
+    private ByteBuffer decodeBase64(String cipherText, int offset) {
+        final byte[] encoded = cipherText.getBytes(StandardCharsets.ISO_8859_1);
+        return BASE64_DECODER.decode(ByteBuffer.wrap(encoded, offset, encoded.length - offset));
+    }
+
+    /**
+     * Payloads without a key id were base64 encoded by commons-codec - which may have added line breaks or left out
+     * padding. The JDK decoder rejects those, so they are decoded the way they were encoded.
+     */
+    private static byte[] decodeBase64Lenient(String encoded) {
+        return org.apache.commons.codec.binary.Base64.decodeBase64(encoded);
+    }
+
+    /**
+     * Encrypts the plaintext with the active key into: suite id | key id length | key id | nonce | ciphertext and tag
+     */
+    private byte[] encryptPayload(byte[] plaintext) {
+        final CipherState state = cipherState.get();
+        final byte[] keyId = activeKey.idBytes;
+        final int headerLength = 2 + keyId.length;
+        final int nonceLength = cipherSuite.getNonceLength();
+        final int offset = headerLength + nonceLength;
+
+        try {
+            final Cipher cipher = state.getEncryptCipher(cipherSuite);
+
+            final byte[] nonce = new byte[nonceLength];
+            state.random.nextBytes(nonce);
+
+            cipher.init(Cipher.ENCRYPT_MODE, activeKey.secretKey(cipherSuite), cipherSuite.parameterSpec(nonce, 0));
+
+            final byte[] out = new byte[offset + cipher.getOutputSize(plaintext.length)];
+            out[0] = cipherSuite.getId();
+            out[1] = (byte) keyId.length;
+            System.arraycopy(keyId, 0, out, 2, keyId.length);
+            System.arraycopy(nonce, 0, out, headerLength, nonceLength);
+
+            cipher.updateAAD(out, 0, headerLength);
+            cipher.doFinal(plaintext, 0, plaintext.length, out, offset);
+
+            return out;
+        } catch (Exception e) {
+            cipherState.remove();
+            throw new RuntimeException("Failed to process cipher", e);
+        }
+    }
+
+    private byte[] decryptPayload(byte[] payload, int length, boolean withKeyId) {
+        if (length < (withKeyId ? 2 : 1)) {
+            throw new RuntimeException("Failed to process cipher: payload is empty");
+        }
+
+        final OAuthCipherSuite suite = OAuthCipherSuite.fromId(payload[0]);
+        if (suite == null) {
+            throw new RuntimeException("Failed to process cipher: unknown cipher suite id " + payload[0]);
+        }
+
+        final EncryptionKey key;
+        final int headerLength;
+        if (withKeyId) {
+            final int keyIdLength = payload[1] & 0xFF;
+            headerLength = 2 + keyIdLength;
+            key = headerLength <= length ? getKey(payload, 2, keyIdLength) : null;
+            if (key == null) {
+                throw new RuntimeException("Failed to process cipher: unknown key id");
+            }
+        } else {
+            headerLength = 1;
+            key = getDefaultKey();
+        }
+
+        final int offset = headerLength + suite.getNonceLength();
+        if (length < offset + TAG_LENGTH) {
+            throw new RuntimeException("Failed to process cipher: payload is truncated");
+        }
+
         try {
-            return cipher.doFinal(value);
+            final Cipher cipher = cipherState.get().getDecryptCipher(suite, key.secretKey(suite), payload, headerLength);
+            cipher.updateAAD(payload, 0, headerLength);
+
+            return cipher.doFinal(payload, offset, length - offset);
         } catch (Exception e) {
+            cipherState.remove();
             throw new RuntimeException("Failed to process cipher", e);
         }
     }
 
-    private Cipher getCipher(int mode, SecretKeySpec secretKey) {
+    private byte[] decryptLegacyPayload(byte[] payload) {
         try {
-            final Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(mode, secretKey);
-            return cipher;
+            return cipherState.get().getLegacyDecryptCipher(getDefaultKey()).doFinal(payload);
         } catch (Exception e) {
-            throw new RuntimeException("Failed to get algorithm: " + ALGORITHM, e);
+            cipherState.remove();
+            throw new RuntimeException("Failed to process cipher", e);
+        }
+    }
+
+    private EncryptionKey getKey(byte[] payload, int offset, int length) {
+        for (EncryptionKey key : keys) {
+            if (key.matches(payload, offset, length)) {
+                return key;
+            }
+        }
+
+        return null;
+    }
+
+    private EncryptionKey getDefaultKey() {
+        if (defaultKey == null) {
+            throw new RuntimeException("Failed to process cipher: payload has no key id and no key has the id " + DEFAULT_KEY_ID);
+        }
+
+        return defaultKey;
+    }
+
+    private static Cipher getCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to get algorithm: " + transformation, e);
+        }
+    }
+
+    /**
+     * The ciphers and random source owned by a single thread. Static - a thread must not keep the service alive.
+     */
+    private static class CipherState {
+
+        private final Cipher[] encryptCiphers = new Cipher[OAuthCipherSuite.values().length];
+
+        private final Cipher[] decryptCiphers = new Cipher[OAuthCipherSuite.values().length];
+
+        /**
+         * The nonce each decrypt cipher was last initialized with
+         */
+        private final byte[][] decryptNonces = new byte[OAuthCipherSuite.values().length][];
+
+        private final SecureRandom random = new SecureRandom();
+
+        private Cipher legacyDecryptCipher;
+
+        private Cipher getEncryptCipher(OAuthCipherSuite suite) {
+            Cipher cipher = encryptCiphers[suite.ordinal()];
+            if (cipher == null) {
+                cipher = getCipher(suite.getTransformation());
+                encryptCiphers[suite.ordinal()] = cipher;
+            }
+
+            return cipher;
+        }
+
+        /**
+         * Get decrypt cipher initialized with the nonce found at the offset. Some ciphers (ChaCha20) refuse being
+         * initialized twice in a row with the same key and nonce, so decrypting the same payload again with those
+         * gets a new cipher instance.
+         */
+        private Cipher getDecryptCipher(OAuthCipherSuite suite, SecretKeySpec secretKey, byte[] payload, int offset) throws Exception {
+            final int index = suite.ordinal();
+            final int nonceLength = suite.getNonceLength();
+
+            Cipher cipher = decryptCiphers[index];
+            byte[] nonce = decryptNonces[index];
+            if (cipher == null || (!suite.allowsRepeatedInit() && nonce != null && equals(nonce, payload, offset))) {
+                cipher = getCipher(suite.getTransformation());
+                decryptCiphers[index] = cipher;
+            }
+
+            decryptNonces[index] = null;
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, suite.parameterSpec(payload, offset));
+
+            if (nonce == null) {
+                nonce = new byte[nonceLength];
+            }
+            System.arraycopy(payload, offset, nonce, 0, nonceLength);
+            decryptNonces[index] = nonce;
+
+            return cipher;
+        }
+
+        private Cipher getLegacyDecryptCipher(EncryptionKey key) throws Exception {
+            if (legacyDecryptCipher == null) {
+                legacyDecryptCipher = getCipher(LEGACY_ALGORITHM);
+                legacyDecryptCipher.init(Cipher.DECRYPT_MODE, key.legacySecretKey);
+            }
+
+            return legacyDecryptCipher;
+        }
+
+        private boolean equals(byte[] nonce, byte[] payload, int offset) {
+            for (int i = 0; i < nonce.length; i++) {
+                if (nonce[i] != payload[offset + i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * An encryption key prepared for every cipher suite
+     */
+    private static class EncryptionKey {
+
+        private final String id;
+
+        private final byte[] idBytes;
+
+        private final int length;
+
+        private final SecretKeySpec[] secretKeys;
+
+        private final SecretKeySpec legacySecretKey;
+
+        private EncryptionKey(String id, String encryptionKey) {
+            if (StringUtils.isEmpty(id)) {
+                throw new IllegalArgumentException("Key id is required for every encryption key");
+            }
+            checkKey(encryptionKey);
+
+            this.id = id;
+            this.idBytes = id.getBytes(StandardCharsets.UTF_8);
+            if (idBytes.length > MAX_KEY_ID_LENGTH) {
+                throw new IllegalArgumentException("Key id is too long: " + id);
+            }
+
+            final byte[] keyBytes = encryptionKey.getBytes(StandardCharsets.UTF_8);
+            this.length = keyBytes.length;
+
+            final OAuthCipherSuite[] suites = OAuthCipherSuite.values();
+            secretKeys = new SecretKeySpec[suites.length];
+            for (OAuthCipherSuite suite : suites) {
+                secretKeys[suite.ordinal()] = new SecretKeySpec(keyBytes, suite.getKeyAlgorithm());
+            }
+
+            legacySecretKey = new SecretKeySpec(keyBytes, LEGACY_ALGORITHM);
+        }
+
+        private SecretKeySpec secretKey(OAuthCipherSuite suite) {
+            return secretKeys[suite.ordinal()];
+        }
+
+        private boolean matches(byte[] payload, int offset, int length) {
+            if (length != idBytes.length || offset + length > payload.length) {
+                return false;
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (idBytes[i] != payload[offset + i]) {
+                    return false;
+                }
+            }
+
+            return true;
         }
     }
 }
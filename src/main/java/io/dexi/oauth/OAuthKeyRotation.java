@@ -0,0 +1,243 @@
+package io.dexi.oauth;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Re-encrypts stored tokens with the active key of an {@link OAuthEncryptionService} - in parallel.
+ *
+ * To rotate keys, create an encryption service holding both the old and the new key, with the new key active, and
+ * pass every stored token through {@link #rotate}. Payloads keep decrypting with the old key until they have been
+ * re-encrypted, so the rotation can run while the app is serving requests.
+ *
+ * <pre>
+ * {@code
+ *     Map<String, String> keys = new HashMap<>();
+ *     keys.put(OAuthEncryptionService.DEFAULT_KEY_ID, oldKey);
+ *     keys.put("2026-10", newKey);
+ *
+ *     OAuthEncryptionService service = new OAuthEncryptionService(keys, "2026-10", OAuthCipherSuite.AES_GCM);
+ *
+ *     new OAuthKeyRotation(service, 8).rotate(storedConnections.iterator(), Connection::getTokens, repository::save,
+ *             progress -> log.info("Rotated {}", progress));
+ * }
+ * </pre>
+ */
+public class OAuthKeyRotation {
+
+    private static final Logger log = LoggerFactory.getLogger(OAuthKeyRotation.class);
+
+    private static final int DEFAULT_PROGRESS_INTERVAL = 10000;
+
+    private final OAuthEncryptionService encryptionService;
+
+    private final int parallelism;
+
+    private final int progressInterval;
+
+    public OAuthKeyRotation(OAuthEncryptionService encryptionService, int parallelism) {
+        this(encryptionService, parallelism, DEFAULT_PROGRESS_INTERVAL);
+    }
+
+    /**
+     * @param encryptionService service holding the keys of the stored tokens, with the new key active
+     * @param parallelism number of worker threads
+     * @param progressInterval number of processed tokens between each progress report
+     */
+    public OAuthKeyRotation(OAuthEncryptionService encryptionService, int parallelism, int progressInterval) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        if (progressInterval < 1) {
+            throw new IllegalArgumentException("Progress interval must be at least 1");
+        }
+        this.encryptionService = encryptionService;
+        this.parallelism = parallelism;
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Re-encrypts a stream of tokens
+     *
+     * @see #rotate(Iterator, Function, Consumer, ProgressListener)
+     */
+    public Progress rotate(Iterator<EncryptedOAuthTokens> tokens, Consumer<EncryptedOAuthTokens> sink,
+                           ProgressListener listener) throws InterruptedException {
+        return rotate(tokens, Function.identity(), sink, listener);
+    }
+
+    /**
+     * Re-encrypts the tokens of a stream of items. Items are read on the calling thread and handed to a bounded pool
+     * of workers - reading pauses whenever the workers fall behind, so only a few items are held in memory at a time.
+     *
+     * Tokens that fail to re-encrypt are logged and counted - and do not stop the rotation. Failures are logged with the
+     * position of the item in the stream, not the item itself - which may hold the tokens.
+     *
+     * @param items the items to rotate, such as stored connections
+     * @param tokensOf get the tokens of an item. The payload of these tokens is replaced when re-encrypted.
+     * @param sink receives every item whose tokens were re-encrypted - and should persist it. Called concurrently
+     *             from the worker threads. Items already encrypted with the active key and cipher suite are skipped.
+     * @param listener receives progress reports. Never called concurrently. May be null.
+     * @return the final progress
+     */
+    public <T> Progress rotate(Iterator<T> items, Function<T, EncryptedOAuthTokens> tokensOf, Consumer<T> sink,
+                               ProgressListener listener) throws InterruptedException {
+        final int maxInFlight = parallelism * 4;
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final Counters counters = new Counters();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("dexi-oauth-rotation-%d")
+                .setDaemon(true)
+                .build());
+
+        try {
+            long position = 0;
+            while (items.hasNext()) {
+                final T item = items.next();
+                final long index = position++;
+
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        rotate(item, index, tokensOf, sink, counters);
+                        counters.processed(listener, progressInterval);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+
+            // Wait for the workers to finish
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final Progress progress = counters.snapshot();
+        if (listener != null) {
+            synchronized (counters) {
+                listener.onProgress(progress);
+            }
+        }
+
+        return progress;
+    }
+
+    private <T> void rotate(T item, long index, Function<T, EncryptedOAuthTokens> tokensOf, Consumer<T> sink,
+                            Counters counters) {
+        try {
+            final EncryptedOAuthTokens tokens = tokensOf.apply(item);
+            final String payload = tokens != null ? tokens.getPayload() : null;
+            if (StringUtils.isBlank(payload)) {
+                counters.skipped.incrementAndGet();
+                return;
+            }
+
+            final String rotated = encryptionService.reencrypt(payload);
+            if (rotated == payload) {
+                counters.skipped.incrementAndGet();
+                return;
+            }
+
+            tokens.setPayload(rotated);
+            sink.accept(item);
+            counters.reencrypted.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.warn("Failed to re-encrypt tokens of item {}", index, e);
+            counters.failed.incrementAndGet();
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * Snapshot of the progress of a rotation
+     */
+    public static class Progress {
+
+        private final long processed;
+
+        private final long reencrypted;
+
+        private final long skipped;
+
+        private final long failed;
+
+        private final long elapsedMillis;
+
+        public Progress(long processed, long reencrypted, long skipped, long failed, long elapsedMillis) {
+            this.processed = processed;
+            this.reencrypted = reencrypted;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        public long getReencrypted() {
+            return reencrypted;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d tokens in %d ms (re-encrypted: %d, skipped: %d, failed: %d)",
+                    processed, elapsedMillis, reencrypted, skipped, failed);
+        }
+    }
+
+    private static class Counters {
+
+        private final long startedAt = System.currentTimeMillis();
+
+        private final AtomicLong processed = new AtomicLong();
+
+        private final AtomicLong reencrypted = new AtomicLong();
+
+        private final AtomicLong skipped = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        private void processed(ProgressListener listener, int progressInterval) {
+            final long count = processed.incrementAndGet();
+            if (listener != null && count % progressInterval == 0) {
+                synchronized (this) {
+                    listener.onProgress(snapshot());
+                }
+            }
+        }
+
+        private Progress snapshot() {
+            return new Progress(processed.get(), reencrypted.get(), skipped.get(), failed.get(),
+                    System.currentTimeMillis() - startedAt);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package io.dexi.oauth;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates and verifies signed, time limited OAuth state tokens - for use as {@code state} in OAuth redirects.
+ *
+ * The token itself carries the return url and activation id, signed with HMAC-SHA256. Any node holding the signing key
+ * can validate the callback of an OAuth flow without looking up the state in shared storage.
+ *
+ * Format: {@code base64url(version | issued at | nonce | activation id and return url) . base64url(signature)}
+ *
+ * Note that the token is signed - not encrypted. Do not put anything in it that the user may not see.
+ *
+ * Usage: when handling an {@link io.dexi.oauth.payloads.OAuthRedirectRequest}, sign the return url and activation id
+ * and send the token as the {@code state} parameter of the authorization url. The provider sends it back in the
+ * callback - verify it with {@link #verify(String, String)} when handling the
+ * {@link io.dexi.oauth.payloads.OAuth2ValidateRequest} or {@link io.dexi.oauth.payloads.OAuth1ValidateRequest}, and
+ * reject the request if it returns null.
+ *
+ * A token can be verified any number of times until it expires - it is not single use. Apps that need to stop replays
+ * within the max age must remember the {@link State#getNonce() nonce} of used tokens until they expire.
+ */
+public class OAuthStateSigner {
+
+    private static final Logger log = LoggerFactory.getLogger(OAuthStateSigner.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte VERSION = 1;
+
+    private static final int HEADER_LENGTH = 1 + 8 + 8;
+
+    private static final int SIGNATURE_LENGTH = 16;
+
+    private static final int MIN_KEY_LENGTH = 16;
+
+    private static final long MAX_CLOCK_SKEW_SECONDS = 60;
+
+    private static final char SEPARATOR = '.';
+
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private final SecretKeySpec signingKey;
+
+    private final long maxAgeSeconds;
+
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * @param signingKey secret key of at least 16 bytes. Should not be the key used for encrypting tokens.
+     * @param maxAge how long a state token is valid
+     */
+    public OAuthStateSigner(String signingKey, long maxAge, TimeUnit unit) {
+        if (StringUtils.isBlank(signingKey) || signingKey.getBytes(StandardCharsets.UTF_8).length < MIN_KEY_LENGTH) {
+            throw new IllegalArgumentException("Signing key of at least " + MIN_KEY_LENGTH + " bytes is required");
+        }
+        this.signingKey = new SecretKeySpec(signingKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.maxAgeSeconds = unit.toSeconds(maxAge);
+
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                final Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(this.signingKey);
+                return instance;
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to get algorithm: " + ALGORITHM, e);
+            }
+        });
+
+        // Fail fast on an unusable key instead of on first use
+        mac.get();
+    }
+
+    /**
+     * Creates a state token for an OAuth redirect
+     */
+    public String sign(String returnUrl, String activationId) {
+        final byte[] values = OAuthTokenCodec.encode(activationId, returnUrl);
+
+        final byte[] payload = new byte[HEADER_LENGTH + values.length];
+        ByteBuffer.wrap(payload)
+                .put(VERSION)
+                .putLong(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()))
+                .putLong(random.nextLong())
+                .put(values);
+
+        return BASE64_ENCODER.encodeToString(payload) + SEPARATOR + BASE64_ENCODER.encodeToString(signature(payload));
+    }
+
+    /**
+     * Verifies a state token received in an OAuth callback - and that it was signed for the activation
+     *
+     * @return the state - or null if the token is not valid or was signed for another activation
+     */
+    public State verify(String token, String activationId) {
+        final State state = verify(token);
+        if (state == null) {
+            return null;
+        }
+
+        if (!state.getActivationId().equals(activationId)) {
+            log.debug("OAuth state was signed for another activation");
+            return null;
+        }
+
+        return state;
+    }
+
+    /**
+     * Verifies a state token received in an OAuth callback
+     *
+     * @return the state - or null if the token is malformed, has an invalid signature or has expired
+     */
+    public State verify(String token) {
+        if (StringUtils.isEmpty(token)) {
+            return null;
+        }
+
+        final int separator = token.indexOf(SEPARATOR);
+        if (separator < 1 || token.indexOf(SEPARATOR, separator + 1) != -1) {
+            log.debug("Malformed OAuth state");
+            return null;
+        }
+
+        final byte[] payload;
+        final byte[] signature;
+        try {
+            payload = BASE64_DECODER.decode(token.substring(0, separator));
+            signature = BASE64_DECODER.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            log.debug("Malformed OAuth state", e);
+            return null;
+        }
+
+        if (!MessageDigest.isEqual(signature, signature(payload))) {
+            log.debug("Invalid OAuth state signature");
+            return null;
+        }
+
+        if (payload.length < HEADER_LENGTH || payload[0] != VERSION) {
+            log.debug("Unsupported OAuth state");
+            return null;
+        }
+
+        final long issuedAt = ByteBuffer.wrap(payload, 1, 8).getLong();
+        final long age = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - issuedAt;
+        if (age > maxAgeSeconds || age < -MAX_CLOCK_SKEW_SECONDS) {
+            log.debug("Expired OAuth state - issued {} seconds ago", age);
+            return null;
+        }
+
+        final byte[] values = new byte[payload.length - HEADER_LENGTH];
+        System.arraycopy(payload, HEADER_LENGTH, values, 0, values.length);
+
+        final String[] decoded = OAuthTokenCodec.decode(values);
+        if (decoded == null) {
+            log.debug("Malformed OAuth state values");
+            return null;
+        }
+
+        final long nonce = ByteBuffer.wrap(payload, 9, 8).getLong();
+
+        return new State(decoded[1], decoded[0], issuedAt, nonce);
+    }
+
+    private byte[] signature(byte[] payload) {
+        final byte[] full = mac.get().doFinal(payload);
+        final byte[] truncated = new byte[SIGNATURE_LENGTH];
+        System.arraycopy(full, 0, truncated, 0, SIGNATURE_LENGTH);
+        return truncated;
+    }
+
+    /**
+     * The verified contents of a state token
+     */
+    public static class State {
+
+        private final String returnUrl;
+
+        private final String activationId;
+
+        private final long issuedAtSeconds;
+
+        private final long nonce;
+
+        public State(String returnUrl, String activationId, long issuedAtSeconds, long nonce) {
+            this.returnUrl = returnUrl;
+            this.activationId = activationId;
+            this.issuedAtSeconds = issuedAtSeconds;
+            this.nonce = nonce;
+        }
+
+        public String getReturnUrl() {
+            return returnUrl;
+        }
+
+        public String getActivationId() {
+            return activationId;
+        }
+
+        /**
+         * Seconds since the epoch
+         */
+        public long getIssuedAtSeconds() {
+            return issuedAtSeconds;
+        }
+
+        /**
+         * Random value identifying the token - for apps that allow each token to be used once
+         */
+        public long getNonce() {
+            return nonce;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.dexi.oauth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cache of decrypted token secrets, keyed by a SHA-256 hash of the encrypted payload. Used by
+ * {@link OAuthEncryptionService} when set through {@link OAuthEncryptionService#setTokenCache(OAuthTokenCache)}
+ * so decrypting the same payload again skips the cipher entirely.
+ *
+ * Entries live no longer than the maximum age of the cache - and no longer than the {@code expiresInSeconds} of the
+ * tokens, counted from when they were cached. Tokens that have already expired are never cached.
+ *
+ * A cache must only be used by a single encryption service.
+ */
+public class OAuthTokenCache {
+
+    private static final HashFunction PAYLOAD_HASH = Hashing.sha256();
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final Cache<HashCode, Entry> cache;
+
+    private final long maximumAgeNanos;
+
+    public OAuthTokenCache(long maximumSize, long maximumAge, TimeUnit unit) {
+        maximumAgeNanos = unit.toNanos(maximumAge);
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(maximumAge, unit)
+                .build();
+    }
+
+    /**
+     * Get the secrets of a payload - decrypting and caching them if not cached already
+     */
+    String[] get(String payload, Long expiresInSeconds, Function<String, String[]> decryptor) {
+        if (expiresInSeconds != null && expiresInSeconds <= 0) {
+            return decryptor.apply(payload);
+        }
+
+        final HashCode key = PAYLOAD_HASH.hashString(payload, StandardCharsets.ISO_8859_1);
+        final long now = System.nanoTime();
+
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            if (!entry.isExpired(now)) {
+                return entry.secrets;
+            }
+            cache.asMap().remove(key, entry);
+        }
+
+        // Tokens living longer than the cache are expired by the cache - and their expiry could overflow
+        final long expiresInNanos = expiresInSeconds != null ? TimeUnit.SECONDS.toNanos(expiresInSeconds) : Long.MAX_VALUE;
+        final long expiresAt = expiresInNanos < maximumAgeNanos ? now + expiresInNanos : NEVER;
+
+        try {
+            return cache.get(key, () -> new Entry(decryptor.apply(payload), expiresAt)).secrets;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Failed to decrypt payload", e.getCause());
+        }
+    }
+
+    /**
+     * Removes all decrypted tokens from memory
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Evicts entries that have reached the maximum age of the cache. Eviction otherwise happens gradually as part of
+     * using the cache - call this periodically to get plaintext tokens out of memory when the cache is mostly idle.
+     */
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private static class Entry {
+
+        private final String[] secrets;
+
+        private final long expiresAt;
+
+        private Entry(String[] secrets, long expiresAt) {
+            this.secrets = secrets;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt != NEVER && now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.dexi.oauth;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes the pair of secrets in an OAuth token payload (access token and refresh token / token secret) to and from
+ * the plaintext that gets encrypted.
+ *
+ * Format:
+ * <pre>
+ *     0x00 | varint(length + 1) | utf-8 bytes | varint(length + 1) | utf-8 bytes
+ * </pre>
+ * A length of 0 denotes null. Secrets may contain any character.
+ *
+ * Also used for the values carried by signed state tokens, see {@link OAuthStateSigner}.
+ *
+ * Plaintexts written by earlier versions of the SDK are the two secrets joined by a colon. Those never start with a
+ * zero byte and are still decoded - following the rules of the original {@code split(":")}.
+ */
+final class OAuthTokenCodec {
+
+    private static final byte FORMAT_BINARY = 0;
+
+    private static final char LEGACY_SEPARATOR = ':';
+
+    private OAuthTokenCodec() {}
+
+    static byte[] encode(String first, String second) {
+        final byte[] firstBytes = first != null ? first.getBytes(StandardCharsets.UTF_8) : null;
+        final byte[] secondBytes = second != null ? second.getBytes(StandardCharsets.UTF_8) : null;
+
+        final byte[] out = new byte[1 + encodedLength(firstBytes) + encodedLength(secondBytes)];
+        out[0] = FORMAT_BINARY;
+
+        int offset = write(out, 1, firstBytes);
+        write(out, offset, secondBytes);
+
+        return out;
+    }
+
+    /**
+     * Decodes plaintext into the two secrets
+     *
+     * @return both secrets - or null if the plaintext did not contain a valid pair of secrets
+     */
+    static String[] decode(byte[] plaintext) {
+        if (plaintext.length > 0 && plaintext[0] == FORMAT_BINARY) {
+            return decodeBinary(plaintext);
+        }
+
+        return decodeLegacy(plaintext);
+    }
+
+    private static String[] decodeBinary(byte[] plaintext) {
+        final String[] out = new String[2];
+
+        int offset = 1;
+        for (int i = 0; i < out.length; i++) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (offset >= plaintext.length || shift > 28) {
+                    return null;
+                }
+                b = plaintext[offset++];
+                if (shift == 28 && (b & 0x78) != 0) {
+                    // More than 31 bits - would overflow into a negative or truncated length
+                    return null;
+                }
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            if (length == 0) {
+                continue;
+            }
+
+            length--;
+            if (length < 0 || length > plaintext.length - offset) {
+                return null;
+            }
+
+            out[i] = new String(plaintext, offset, length, StandardCharsets.UTF_8);
+            offset += length;
+        }
+
+        return offset == plaintext.length ? out : null;
+    }
+
+    /**
+     * Same result as {@code new String(plaintext).split(":")} requiring exactly 2 parts.
+     */
+    private static String[] decodeLegacy(byte[] plaintext) {
+        // split() drops trailing empty strings - so trailing separators are ignored
+        int end = plaintext.length;
+        while (end > 0 && plaintext[end - 1] == LEGACY_SEPARATOR) {
+            end--;
+        }
+
+        int separator = -1;
+        for (int i = 0; i < end; i++) {
+            if (plaintext[i] == LEGACY_SEPARATOR) {
+                if (separator != -1) {
+                    return null;
+                }
+                separator = i;
+            }
+        }
+
+        if (separator == -1) {
+            return null;
+        }
+
+        return new String[] {
+                new String(plaintext, 0, separator, StandardCharsets.UTF_8),
+                new String(plaintext, separator + 1, end - separator - 1, StandardCharsets.UTF_8)
+        };
+    }
+
+    private static int encodedLength(byte[] value) {
+        final int length = value != null ? value.length : 0;
+        return varintLength(value != null ? length + 1 : 0) + length;
+    }
+
+    private static int write(byte[] out, int offset, byte[] value) {
+        int length = value != null ? value.length + 1 : 0;
+        while ((length & ~0x7F) != 0) {
+            out[offset++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out[offset++] = (byte) length;
+
+        if (value != null) {
+            System.arraycopy(value, 0, out, offset, value.length);
+            offset += value.length;
+        }
+
+        return offset;
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,154 @@
+package io.dexi.oauth;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel: schedules large numbers of coarse grained timeouts at constant cost per timeout, using a single
+ * thread that wakes up once per tick. Expired tasks are handed to the given executor - which must not run long
+ * tasks on the calling thread, since that would delay the timer.
+ */
+final class TimerWheel implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickNanos;
+
+    private final List<List<Timeout>> wheel;
+
+    private final int mask;
+
+    private final Executor executor;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    private final long startTime = System.nanoTime();
+
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    /**
+     * Ticks done - only accessed by the timer thread
+     */
+    private long tick;
+
+    TimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize, Executor executor) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of 2");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        this.mask = wheelSize - 1;
+        this.executor = executor;
+
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("Timer has been stopped");
+        }
+
+        final Timeout timeout = new Timeout(task, System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay)));
+        pending.add(timeout);
+
+        return timeout;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            final long deadline = tickNanos * (tick + 1);
+            long sleep;
+            while ((sleep = deadline - (System.nanoTime() - startTime)) > 0 && running) {
+                LockSupport.parkNanos(this, sleep);
+            }
+
+            if (!running) {
+                break;
+            }
+
+            transferPending();
+            expire(wheel.get((int) (tick & mask)));
+            tick++;
+        }
+
+        pending.clear();
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+
+            final long ticks = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (ticks - tick) / wheel.size();
+            wheel.get((int) (ticks & mask)).add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            final Timeout timeout = bucket.get(i);
+            if (timeout.cancelled) {
+                continue;
+            }
+
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                bucket.set(kept++, timeout);
+                continue;
+            }
+
+            try {
+                executor.execute(timeout.task);
+            } catch (RuntimeException e) {
+                log.warn("Failed to run expired timeout", e);
+            }
+        }
+
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    static final class Timeout {
+
+        private final Runnable task;
+
+        private final long deadline;
+
+        private long remainingRounds;
+
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -8,6 +8,11 @@ public class OAuth1ValidateRequest {
 
     private String redirectUrl;
 
+    /**
+     * The state sent back by the provider - see {@link io.dexi.oauth.OAuthStateSigner}
+     */
+    private String state;
+
     public String getOauthToken() {
         return oauthToken;
     }
@@ -31,4 +36,12 @@ public class OAuth1ValidateRequest {
     public void setRedirectUrl(String redirectUrl) {
         this.redirectUrl = redirectUrl;
     }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
 }
@@ -5,6 +5,11 @@ public class OAuth2ValidateRequest {
 
     private String redirectUrl;
 
+    /**
+     * The state sent back by the provider - see {@link io.dexi.oauth.OAuthStateSigner}
+     */
+    private String state;
+
     public String getCode() {
         return code;
     }
@@ -20,4 +25,12 @@ public class OAuth2ValidateRequest {
     public void setRedirectUrl(String redirectUrl) {
         this.redirectUrl = redirectUrl;
     }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
 }
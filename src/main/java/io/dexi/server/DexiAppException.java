@@ -0,0 +1,27 @@
+package io.dexi.server;
+
+/**
+ * Throw from a handler to respond with an error shown to the user in dexi.
+ *
+ * Use status codes 400-499 for configuration issues and 500-599 for internal issues.
+ */
+public class DexiAppException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public DexiAppException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public DexiAppException(int status, String message, Throwable cause) {
+        super(message, cause);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
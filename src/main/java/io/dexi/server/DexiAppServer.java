@@ -0,0 +1,320 @@
+package io.dexi.server;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.dexi.service.DynamicSchemaConfig;
+import io.dexi.service.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lightweight HTTP server for dexi apps - built on the HTTP server of the JDK, so apps can answer dexi without a
+ * servlet container.
+ *
+ * Register a handler for the path of each endpoint defined for the app in dexi, then start the server:
+ * <pre>
+ *     DexiAppServer server = new DexiAppServer(8080)
+ *             .onDynamicSchema("/output-schema", MyConfig.class, (request, config) -> outputSchema(config))
+ *             .onPayload("/validate", MyConfig.class, (request, config) -> validate(config))
+ *             .start();
+ * </pre>
+ *
+ * Handlers run on the executor of the server - by default a fixed pool of daemon threads - and may block.
+ * Connections are kept alive between requests. Errors are returned in the format expected by dexi - throw
+ * {@link DexiAppException} to choose status and message. A request failing after its response was started - like a
+ * row processor failing after output rows were streamed - has its connection dropped without ending the response, so
+ * the failure is not mistaken for a complete response.
+ */
+public class DexiAppServer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DexiAppServer.class);
+
+    private static final int DEFAULT_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final int DEFAULT_ROW_BATCH_SIZE = 500;
+
+    private static final int DEFAULT_MAX_BUFFERED_BATCHES = 2;
+
+    private final HttpServer server;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter writer;
+
+    private ExecutorService ownedExecutor;
+
+    /**
+     * Runs row processors - separate from the request threads, which wait for them. At most one thread per request.
+     */
+    private final ExecutorService rowExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("dexi-app-rows-%d")
+            .setDaemon(true)
+            .build());
+
+    private boolean started;
+
+    public DexiAppServer(int port) throws IOException {
+        this(new InetSocketAddress(port), defaultObjectMapper());
+    }
+
+    public DexiAppServer(InetSocketAddress address, ObjectMapper objectMapper) throws IOException {
+        this.server = HttpServer.create(address, 0);
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writer();
+    }
+
+    /**
+     * Same setup as the object mapper of {@link io.dexi.client.DexiClientFactory}
+     */
+    private static ObjectMapper defaultObjectMapper() {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        objectMapper.disable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS);
+        objectMapper.disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return objectMapper;
+    }
+
+    /**
+     * Sets the executor running the handlers. Must be called before {@link #start()}. The executor is not shut down
+     * by the server.
+     */
+    public synchronized DexiAppServer setExecutor(Executor executor) {
+        checkNotStarted();
+        server.setExecutor(executor);
+        return this;
+    }
+
+    /**
+     * Registers a handler with full access to request and response
+     */
+    public DexiAppServer onRequest(String path, DexiRequestHandler handler) {
+        server.createContext(path, exchange -> handle(exchange, handler));
+        return this;
+    }
+
+    /**
+     * Registers a handler receiving the JSON body bound to the payload class - and responding with the result as JSON.
+     * Use for app and component validation, activation and deactivation.
+     */
+    public <T, R> DexiAppServer onPayload(String path, Class<T> payloadClass, PayloadHandler<T, R> handler) {
+        return onPayload(path, objectMapper.getTypeFactory().constructType(payloadClass), handler);
+    }
+
+    /**
+     * Registers a handler for dynamic schema requests - input, output and configuration schemas
+     */
+    public <T> DexiAppServer onDynamicSchema(String path, Class<T> optionsClass, PayloadHandler<DynamicSchemaConfig<T>, Schema> handler) {
+        final TypeFactory types = objectMapper.getTypeFactory();
+        return onPayload(path, types.constructParametricType(DynamicSchemaConfig.class, types.constructType(optionsClass)), handler);
+    }
+
+    /**
+     * Registers a processor for rows sent to a component - such as a data storage, data filter or data source. Rows are
+     * processed in batches of 500 while the request is being read, and output rows are streamed back as written.
+     */
+    public <C> DexiAppServer onRows(String path, Class<C> configClass, RowProcessor<C> processor) {
+        return onRows(path, configClass, DEFAULT_ROW_BATCH_SIZE, DEFAULT_MAX_BUFFERED_BATCHES, processor);
+    }
+
+    /**
+     * Registers a processor for rows sent to a component
+     *
+     * @param batchSize rows per batch handed to the processor
+     * @param maxBufferedBatches batches read ahead of the processor before reading pauses
+     */
+    public <C> DexiAppServer onRows(String path, Class<C> configClass, int batchSize, int maxBufferedBatches, RowProcessor<C> processor) {
+        return onRequest(path, new RowStreamHandler<>(objectMapper, configClass, processor, batchSize, maxBufferedBatches, rowExecutor));
+    }
+
+    private <T, R> DexiAppServer onPayload(String path, JavaType payloadType, PayloadHandler<T, R> handler) {
+        final ObjectReader reader = objectMapper.readerFor(payloadType);
+
+        return onRequest(path, (request, response) -> {
+            final T payload = readPayload(reader, request.getBody());
+            final R result = handler.handle(request, payload);
+            if (result == null) {
+                response.setStatus(204).sendEmpty();
+                return;
+            }
+
+            response.setContentType(DexiHttpResponse.JSON_CONTENT_TYPE);
+            response.send(writer.writeValueAsBytes(result));
+        });
+    }
+
+    private <T> T readPayload(ObjectReader reader, InputStream body) throws IOException {
+        final int first = peek(body);
+        if (first == -1) {
+            return null;
+        }
+
+        try {
+            return reader.readValue(new PrefixedInputStream(first, body));
+        } catch (IOException e) {
+            throw new DexiAppException(400, "Invalid payload: " + e.getMessage(), e);
+        }
+    }
+
+    private static int peek(InputStream body) throws IOException {
+        int b;
+        while ((b = body.read()) != -1) {
+            if (!Character.isWhitespace(b)) {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized DexiAppServer start() {
+        checkNotStarted();
+        if (server.getExecutor() == null) {
+            ownedExecutor = Executors.newFixedThreadPool(DEFAULT_THREADS, new ThreadFactoryBuilder()
+                    .setNameFormat("dexi-app-server-%d")
+                    .setDaemon(true)
+                    .build());
+            server.setExecutor(ownedExecutor);
+        }
+
+        server.start();
+        started = true;
+        log.info("Dexi app server listening on {}", getAddress());
+        return this;
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops the server - waiting up to the given delay for running requests to complete
+     */
+    public synchronized void stop(long delay, TimeUnit unit) {
+        server.stop((int) Math.max(0, unit.toSeconds(delay)));
+        rowExecutor.shutdown();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+            ownedExecutor = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stop(0, TimeUnit.SECONDS);
+    }
+
+    private void checkNotStarted() {
+        if (started) {
+            throw new IllegalStateException("Server has already been started");
+        }
+    }
+
+    private void handle(HttpExchange exchange, DexiRequestHandler handler) throws IOException {
+        final DexiHttpRequest request = new DexiHttpRequest(exchange);
+        final DexiHttpResponse response = new DexiHttpResponse(exchange);
+        try {
+            handler.handle(request, response);
+            if (!response.isCommitted()) {
+                response.sendEmpty();
+            }
+        } catch (DexiAppException e) {
+            log.debug("Request to {} failed with status {}: {}", request.getPath(), e.getStatus(), e.getMessage());
+            fail(exchange, response, e.getStatus(), e.getMessage());
+            return;
+        } catch (Exception e) {
+            log.error("Request to {} failed", request.getPath(), e);
+            fail(exchange, response, 500, "Internal error");
+            return;
+        }
+
+        exchange.close();
+    }
+
+    /**
+     * Sends the error - or, if the response has already been started, drops the connection without ending the
+     * response. Closing the exchange would end a streamed response normally, and dexi could not tell the truncated
+     * response from a complete one.
+     */
+    private void fail(HttpExchange exchange, DexiHttpResponse response, int status, String message) throws IOException {
+        if (response.isCommitted()) {
+            // The JDK server closes the connection when a handler throws
+            throw new IOException("Request failed after the response was started: " + message);
+        }
+
+        try {
+            sendError(response, status, message);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendError(DexiHttpResponse response, int status, String message) {
+        try {
+            final ObjectNode error = objectMapper.createObjectNode()
+                    .put("error", true)
+                    .put("msg", message)
+                    .put("code", status);
+
+            response.setStatus(status)
+                    .setContentType(DexiHttpResponse.JSON_CONTENT_TYPE)
+                    .send(writer.writeValueAsBytes(error));
+        } catch (IOException e) {
+            log.debug("Failed to send error response", e);
+        }
+    }
+
+    /**
+     * Puts back the byte read when checking for an empty body
+     */
+    private static final class PrefixedInputStream extends InputStream {
+
+        private final InputStream delegate;
+
+        private int first;
+
+        private PrefixedInputStream(int first, InputStream delegate) {
+            this.first = first;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (first != -1) {
+                final int out = first;
+                first = -1;
+                return out;
+            }
+            return delegate.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (first != -1) {
+                b[off] = (byte) first;
+                first = -1;
+                return 1;
+            }
+            return delegate.read(b, off, len);
+        }
+    }
+}
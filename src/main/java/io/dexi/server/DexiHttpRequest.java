@@ -0,0 +1,51 @@
+package io.dexi.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import io.dexi.client.DexiAuth;
+import io.dexi.client.DexiClientFactory;
+
+import java.io.InputStream;
+
+/**
+ * A request from dexi received by {@link DexiAppServer}
+ */
+public class DexiHttpRequest implements DexiClientFactory.HttpRequest {
+
+    private final HttpExchange exchange;
+
+    DexiHttpRequest(HttpExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    @Override
+    public String getHeader(String headerName) {
+        return exchange.getRequestHeaders().getFirst(headerName);
+    }
+
+    public String getMethod() {
+        return exchange.getRequestMethod();
+    }
+
+    public String getPath() {
+        return exchange.getRequestURI().getPath();
+    }
+
+    public String getActivationId() {
+        return getHeader(DexiAuth.HEADER_ACTIVATION);
+    }
+
+    public String getComponent() {
+        return getHeader(DexiAuth.HEADER_COMPONENT);
+    }
+
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    /**
+     * The raw request body
+     */
+    public InputStream getBody() {
+        return exchange.getRequestBody();
+    }
+}
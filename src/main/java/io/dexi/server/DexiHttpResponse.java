@@ -0,0 +1,89 @@
+package io.dexi.server;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The response to a request from dexi. Set status and headers before getting the body.
+ */
+public class DexiHttpResponse {
+
+    static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final HttpExchange exchange;
+
+    private int status = 200;
+
+    private boolean committed;
+
+    DexiHttpResponse(HttpExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    public DexiHttpResponse setStatus(int status) {
+        checkNotCommitted();
+        this.status = status;
+        return this;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public DexiHttpResponse setHeader(String name, String value) {
+        checkNotCommitted();
+        exchange.getResponseHeaders().set(name, value);
+        return this;
+    }
+
+    public DexiHttpResponse setContentType(String contentType) {
+        return setHeader("Content-Type", contentType);
+    }
+
+    /**
+     * Sends status and headers and gets the body - streamed to the client in chunks
+     */
+    public OutputStream getBody() throws IOException {
+        if (!committed) {
+            committed = true;
+            exchange.sendResponseHeaders(status, 0);
+        }
+        return exchange.getResponseBody();
+    }
+
+    /**
+     * Sends the complete body in one go - with a content length
+     */
+    public void send(byte[] body) throws IOException {
+        checkNotCommitted();
+        committed = true;
+        if (body.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Sends status and headers without a body
+     */
+    public void sendEmpty() throws IOException {
+        checkNotCommitted();
+        committed = true;
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    private void checkNotCommitted() {
+        if (committed) {
+            throw new IllegalStateException("Response has already been sent");
+        }
+    }
+}
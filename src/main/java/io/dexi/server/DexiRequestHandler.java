@@ -0,0 +1,11 @@
+package io.dexi.server;
+
+/**
+ * Handles a request from dexi with full access to the request and response.
+ *
+ * @see PayloadHandler for handlers reading and writing JSON
+ */
+public interface DexiRequestHandler {
+
+    void handle(DexiHttpRequest request, DexiHttpResponse response) throws Exception;
+}
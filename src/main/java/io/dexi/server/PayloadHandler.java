@@ -0,0 +1,13 @@
+package io.dexi.server;
+
+/**
+ * Handles a request from dexi carrying a JSON payload - such as validating configuration or resolving a dynamic
+ * schema.
+ *
+ * @param <T> The payload class. Use {@code Void} for requests without payload.
+ * @param <R> The result class - written as JSON. Return null to respond without content.
+ */
+public interface PayloadHandler<T, R> {
+
+    R handle(DexiHttpRequest request, T payload) throws Exception;
+}
@@ -0,0 +1,28 @@
+package io.dexi.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * Processes rows sent by dexi to a component - such as a data storage or data filter - in batches, as they are read
+ * from the request.
+ *
+ * Batches of a request are processed one at a time and in order. The next batch is read while the current one is
+ * processed, but reading stops when the processor falls behind - so memory use depends on the batch size only.
+ *
+ * @param <C> The component configuration class - bound from the configuration header
+ */
+public interface RowProcessor<C> {
+
+    /**
+     * Processes a batch of rows. Output rows can be written right away - they are streamed to dexi as they are written.
+     */
+    void process(DexiHttpRequest request, C config, List<JsonNode> rows, RowWriter output) throws Exception;
+
+    /**
+     * Called after the last batch - or right away for requests without rows, such as data sources
+     */
+    default void complete(DexiHttpRequest request, C config, RowWriter output) throws Exception {
+    }
+}
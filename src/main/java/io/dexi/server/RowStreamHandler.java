@@ -0,0 +1,199 @@
+package io.dexi.server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.dexi.service.DexiPayloadHeaders;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reads rows from the request in batches and hands them to a {@link RowProcessor} running on another thread.
+ *
+ * Batches are processed in order, one at a time. At most {@code maxBufferedBatches} batches are read ahead of the
+ * processor - after that the request thread waits, and stops reading from the connection, until the processor catches
+ * up.
+ */
+final class RowStreamHandler<C> implements DexiRequestHandler {
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectReader configReader;
+
+    private final RowProcessor<C> processor;
+
+    private final int batchSize;
+
+    private final int maxBufferedBatches;
+
+    private final Executor executor;
+
+    RowStreamHandler(ObjectMapper objectMapper, Class<C> configClass, RowProcessor<C> processor,
+                     int batchSize, int maxBufferedBatches, Executor executor) {
+        if (batchSize < 1 || maxBufferedBatches < 1) {
+            throw new IllegalArgumentException("Batch size and max buffered batches must be positive");
+        }
+        this.objectMapper = objectMapper;
+        this.configReader = objectMapper.readerFor(configClass);
+        this.processor = processor;
+        this.batchSize = batchSize;
+        this.maxBufferedBatches = maxBufferedBatches;
+        this.executor = executor;
+    }
+
+    @Override
+    public void handle(DexiHttpRequest request, DexiHttpResponse response) throws Exception {
+        final C config = readConfig(request);
+        final StreamingRowWriter output = new StreamingRowWriter(response);
+        final Semaphore buffered = new Semaphore(maxBufferedBatches);
+
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getBody())) {
+            JsonToken token = parser.nextToken();
+            if (token != null && token != JsonToken.START_ARRAY) {
+                throw new DexiAppException(400, "Expected array of rows");
+            }
+
+            List<JsonNode> batch = new ArrayList<>(batchSize);
+            while (token != null && (token = nextRow(parser)) == JsonToken.START_OBJECT) {
+                batch.add(parser.readValueAsTree());
+
+                if (batch.size() >= batchSize) {
+                    tail = submit(tail, batch, buffered, request, config, output);
+                    if (tail.isCompletedExceptionally()) {
+                        break;
+                    }
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+
+            if (!batch.isEmpty() && !tail.isCompletedExceptionally()) {
+                tail = submit(tail, batch, buffered, request, config, output);
+            }
+        } catch (IOException e) {
+            // Wait for the processor before failing - it may be writing the response
+            await(tail.exceptionally(t -> null));
+            throw new DexiAppException(400, "Invalid rows: " + e.getMessage(), e);
+        }
+
+        await(tail.thenRunAsync(() -> call(() -> processor.complete(request, config, output)), executor));
+
+        output.finish();
+    }
+
+    private JsonToken nextRow(JsonParser parser) throws IOException {
+        final JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new IOException("Unexpected end of rows");
+        }
+        if (token != JsonToken.START_OBJECT && token != JsonToken.END_ARRAY) {
+            throw new IOException("Expected row object but got " + token);
+        }
+        return token;
+    }
+
+    private CompletableFuture<Void> submit(CompletableFuture<Void> tail, List<JsonNode> batch, Semaphore buffered,
+                                           DexiHttpRequest request, C config, StreamingRowWriter output) throws InterruptedException {
+        buffered.acquire();
+
+        final CompletableFuture<Void> next = tail.thenRunAsync(() -> call(() -> {
+            processor.process(request, config, batch, output);
+            output.flush();
+        }), executor);
+
+        // Later stages are skipped when a batch fails - the permit is released either way
+        next.whenComplete((result, error) -> buffered.release());
+
+        return next;
+    }
+
+    private C readConfig(DexiHttpRequest request) {
+        final String json = request.getHeader(DexiPayloadHeaders.CONFIGURATION);
+        if (json == null || json.trim().isEmpty()) {
+            return null;
+        }
+
+        try {
+            return configReader.readValue(json);
+        } catch (IOException e) {
+            throw new DexiAppException(400, "Invalid configuration: " + e.getMessage(), e);
+        }
+    }
+
+    private static void await(CompletableFuture<?> future) throws Exception {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static void call(ProcessorCall call) {
+        try {
+            call.run();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private interface ProcessorCall {
+        void run() throws Exception;
+    }
+
+    /**
+     * Writes rows as a JSON array - sending the response headers on the first row
+     */
+    private final class StreamingRowWriter implements RowWriter {
+
+        private final DexiHttpResponse response;
+
+        private JsonGenerator generator;
+
+        private StreamingRowWriter(DexiHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public synchronized void write(Object row) throws IOException {
+            if (generator == null) {
+                response.setContentType(DexiHttpResponse.JSON_CONTENT_TYPE);
+                generator = objectMapper.getFactory().createGenerator(response.getBody());
+                generator.writeStartArray();
+            }
+
+            generator.writeObject(row);
+        }
+
+        private synchronized void flush() throws IOException {
+            if (generator != null) {
+                generator.flush();
+            }
+        }
+
+        private synchronized void finish() throws IOException {
+            if (generator == null) {
+                response.setStatus(204).sendEmpty();
+                return;
+            }
+
+            generator.writeEndArray();
+            generator.close();
+        }
+    }
+}
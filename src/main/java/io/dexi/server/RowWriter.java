@@ -0,0 +1,14 @@
+package io.dexi.server;
+
+import java.io.IOException;
+
+/**
+ * Streams output rows of a {@link RowProcessor} to dexi
+ */
+public interface RowWriter {
+
+    /**
+     * Writes a row - any object that can be serialized to a JSON object, such as a map or {@code JsonNode}
+     */
+    void write(Object row) throws IOException;
+}
@@ -0,0 +1,559 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Buffers rows of a {@link Schema} column by column - for components that need to hold on to many rows at once.
+ *
+ * Every top level field of the schema gets a column typed by its {@link FieldType}: integers, numbers and booleans are
+ * stored in primitive arrays, strings are dictionary encoded and everything else is kept as {@link JsonNode}. Nulls
+ * are tracked in a bit set per column. Columns use the field indexes of {@link SchemaRowCodec}.
+ *
+ * Values are scanned fastest through the column getters, such as {@link #getDouble(int, int)}. Rows can be appended
+ * and read as {@link SchemaRowCodec.Row} - and streamed to and from JSON.
+ *
+ * Batches are not thread-safe.
+ */
+public class ColumnarRowBatch implements Iterable<SchemaRowCodec.Row> {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final Schema schema;
+
+    private final SchemaRowCodec codec;
+
+    private final Column[] columns;
+
+    private int size;
+
+    private int capacity;
+
+    public ColumnarRowBatch(Schema schema) {
+        this(schema, DEFAULT_CAPACITY);
+    }
+
+    public ColumnarRowBatch(Schema schema, int initialCapacity) {
+        this.schema = schema;
+        this.codec = SchemaRowCodec.forSchema(schema);
+        this.capacity = Math.max(1, initialCapacity);
+        this.columns = new Column[codec.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = newColumn(codec.getFieldType(i), capacity);
+        }
+    }
+
+    private ColumnarRowBatch(Schema schema, Column[] columns, int size) {
+        this.schema = schema;
+        this.codec = SchemaRowCodec.forSchema(schema);
+        this.columns = columns;
+        this.size = size;
+        this.capacity = Math.max(1, size);
+    }
+
+    private static Column newColumn(FieldType type, int capacity) {
+        switch (type) {
+            case INTEGER:
+            case NUMBER:
+            case BOOLEAN:
+                // Doubles are stored as raw long bits and booleans as 0 / 1 - same as in SchemaRowCodec.Row
+                return new PrimitiveColumn(capacity);
+            case STRING:
+                return new StringColumn(capacity);
+            default:
+                return new NodeColumn(capacity);
+        }
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public SchemaRowCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Number of rows in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return index of the column of the field - or -1 if the schema has no such field
+     */
+    public int indexOf(String fieldName) {
+        return codec.indexOf(fieldName);
+    }
+
+    /**
+     * Appends a row created by {@link #getCodec()}
+     */
+    public void append(SchemaRowCodec.Row row) {
+        if (row.getCodec() != codec) {
+            throw new IllegalArgumentException("Row was not created by the codec of this batch");
+        }
+
+        ensureCapacity(size + 1);
+        for (int i = 0; i < columns.length; i++) {
+            if (row.isNull(i)) {
+                columns[i].setNull(size);
+            } else {
+                columns[i].set(size, row, i);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Appends rows read from the parser - either a JSON array of rows or a sequence of row objects. Stops at the end
+     * of the array or input.
+     *
+     * @return the number of rows appended
+     */
+    public int appendRows(JsonParser parser) throws IOException {
+        final SchemaRowCodec.Row row = codec.newRow();
+        int count = 0;
+        while (codec.read(parser, row)) {
+            append(row);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes all rows as a JSON array
+     */
+    public void writeRows(JsonGenerator generator) throws IOException {
+        final SchemaRowCodec.Row row = codec.newRow();
+
+        generator.writeStartArray();
+        for (int i = 0; i < size; i++) {
+            codec.write(generator, getRow(i, row));
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Copies a row of the batch into the given row
+     *
+     * @return the given row
+     */
+    public SchemaRowCodec.Row getRow(int rowIndex, SchemaRowCodec.Row target) {
+        checkRow(rowIndex);
+        target.clear();
+        for (int i = 0; i < columns.length; i++) {
+            if (!columns[i].isNull(rowIndex)) {
+                columns[i].get(rowIndex, target, i);
+            }
+        }
+
+        return target;
+    }
+
+    /**
+     * Iterates the rows of the batch. The same row instance is returned by every call to {@code next()} - copy values
+     * that need to outlive the iteration.
+     */
+    @Override
+    public Iterator<SchemaRowCodec.Row> iterator() {
+        final SchemaRowCodec.Row row = codec.newRow();
+
+        return new Iterator<SchemaRowCodec.Row>() {
+
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public SchemaRowCodec.Row next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return getRow(next++, row);
+            }
+        };
+    }
+
+    /**
+     * Creates a batch with a copy of the given columns only
+     */
+    public ColumnarRowBatch project(String... fieldNames) {
+        final Schema projected = new Schema();
+        for (String fieldName : fieldNames) {
+            if (!schema.containsKey(fieldName)) {
+                throw new IllegalArgumentException("Unknown field: " + fieldName);
+            }
+            projected.put(fieldName, schema.get(fieldName));
+        }
+
+        final SchemaRowCodec projectedCodec = SchemaRowCodec.forSchema(projected);
+        final Column[] projectedColumns = new Column[projectedCodec.size()];
+        for (int i = 0; i < projectedColumns.length; i++) {
+            projectedColumns[i] = columns[codec.indexOf(projectedCodec.getFieldName(i))].copy(size);
+        }
+
+        return new ColumnarRowBatch(projected, projectedColumns, size);
+    }
+
+    public boolean isNull(int column, int rowIndex) {
+        checkRow(rowIndex);
+        return columns[column].isNull(rowIndex);
+    }
+
+    public long getLong(int column, int rowIndex) {
+        checkRow(rowIndex);
+        return primitive(column, FieldType.INTEGER).values[rowIndex];
+    }
+
+    public double getDouble(int column, int rowIndex) {
+        checkRow(rowIndex);
+        return Double.longBitsToDouble(primitive(column, FieldType.NUMBER).values[rowIndex]);
+    }
+
+    public boolean getBoolean(int column, int rowIndex) {
+        checkRow(rowIndex);
+        return primitive(column, FieldType.BOOLEAN).values[rowIndex] != 0;
+    }
+
+    public String getString(int column, int rowIndex) {
+        checkRow(rowIndex);
+        final Column col = columns[column];
+        if (col instanceof StringColumn) {
+            return ((StringColumn) col).get(rowIndex);
+        }
+        if (col instanceof NodeColumn) {
+            final JsonNode node = ((NodeColumn) col).values[rowIndex];
+            return node != null ? node.asText() : null;
+        }
+
+        throw new IllegalArgumentException("Column " + codec.getFieldName(column) + " is not a string column");
+    }
+
+    public JsonNode getNode(int column, int rowIndex) {
+        checkRow(rowIndex);
+        final Column col = columns[column];
+        if (!(col instanceof NodeColumn)) {
+            throw new IllegalArgumentException("Column " + codec.getFieldName(column) + " is not an object column");
+        }
+
+        return ((NodeColumn) col).values[rowIndex];
+    }
+
+    /**
+     * Removes all rows - keeping the allocated memory
+     */
+    public void clear() {
+        for (Column column : columns) {
+            column.clear(size);
+        }
+        size = 0;
+    }
+
+    /**
+     * Primitive columns share one representation - the type must be checked, or a number would be read as raw bits
+     */
+    private PrimitiveColumn primitive(int column, FieldType type) {
+        if (codec.getFieldType(column) != type) {
+            throw new IllegalArgumentException("Column " + codec.getFieldName(column) + " has type " +
+                    codec.getFieldType(column).name().toLowerCase(Locale.ROOT) + ", not " +
+                    type.name().toLowerCase(Locale.ROOT));
+        }
+
+        return (PrimitiveColumn) columns[column];
+    }
+
+    /**
+     * @return number of distinct strings in the dictionary of the column - or -1 if it has no dictionary
+     */
+    int getDictionarySize(int column) {
+        final StringColumn col = (StringColumn) columns[column];
+        return col.dictionary != null ? col.dictionary.size() : -1;
+    }
+
+    private void checkRow(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= size) {
+            throw new IndexOutOfBoundsException("Row " + rowIndex + " of " + size);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+
+        capacity = Math.max(required, capacity + (capacity >> 1));
+        for (Column column : columns) {
+            column.grow(capacity);
+        }
+    }
+
+    private abstract static class Column {
+
+        /**
+         * Bit set of rows with a value
+         */
+        protected long[] present;
+
+        protected Column(int capacity) {
+            present = new long[(capacity + 63) >>> 6];
+        }
+
+        boolean isNull(int row) {
+            return (present[row >>> 6] & (1L << row)) == 0;
+        }
+
+        void setNull(int row) {
+            present[row >>> 6] &= ~(1L << row);
+        }
+
+        protected void markPresent(int row) {
+            present[row >>> 6] |= 1L << row;
+        }
+
+        void grow(int capacity) {
+            present = Arrays.copyOf(present, (capacity + 63) >>> 6);
+        }
+
+        void clear(int size) {
+            Arrays.fill(present, 0L);
+        }
+
+        abstract void set(int row, SchemaRowCodec.Row source, int field);
+
+        abstract void get(int row, SchemaRowCodec.Row target, int field);
+
+        abstract Column copy(int size);
+    }
+
+    private static final class PrimitiveColumn extends Column {
+
+        private long[] values;
+
+        private PrimitiveColumn(int capacity) {
+            super(capacity);
+            values = new long[capacity];
+        }
+
+        @Override
+        void set(int row, SchemaRowCodec.Row source, int field) {
+            values[row] = source.getRaw(field);
+            markPresent(row);
+        }
+
+        @Override
+        void get(int row, SchemaRowCodec.Row target, int field) {
+            target.setRaw(field, values[row]);
+        }
+
+        @Override
+        void setNull(int row) {
+            super.setNull(row);
+            values[row] = 0;
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Column copy(int size) {
+            final PrimitiveColumn out = new PrimitiveColumn(Math.max(1, size));
+            System.arraycopy(values, 0, out.values, 0, size);
+            System.arraycopy(present, 0, out.present, 0, out.present.length);
+            return out;
+        }
+    }
+
+    /**
+     * Strings as codes into a dictionary of distinct values. Falls back to storing the strings as they are once the
+     * dictionary gets too big to pay off.
+     */
+    private static final class StringColumn extends Column {
+
+        private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+        private int[] codes;
+
+        private List<String> dictionary = new ArrayList<>();
+
+        private Map<String, Integer> lookup = new HashMap<>();
+
+        /**
+         * Set when the dictionary has been abandoned
+         */
+        private String[] plain;
+
+        private StringColumn(int capacity) {
+            super(capacity);
+            codes = new int[capacity];
+        }
+
+        String get(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            return plain != null ? plain[row] : dictionary.get(codes[row]);
+        }
+
+        @Override
+        void set(int row, SchemaRowCodec.Row source, int field) {
+            final String value = source.getString(field);
+            markPresent(row);
+
+            if (plain != null) {
+                plain[row] = value;
+                return;
+            }
+
+            Integer code = lookup.get(value);
+            if (code == null) {
+                if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+                    toPlain(codes.length);
+                    plain[row] = value;
+                    return;
+                }
+
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        void get(int row, SchemaRowCodec.Row target, int field) {
+            target.setString(field, get(row));
+        }
+
+        @Override
+        void setNull(int row) {
+            super.setNull(row);
+            if (plain != null) {
+                plain[row] = null;
+            }
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            if (plain != null) {
+                plain = Arrays.copyOf(plain, capacity);
+            } else {
+                codes = Arrays.copyOf(codes, capacity);
+            }
+        }
+
+        /**
+         * Starts a new dictionary - the next rows may repeat values again, even if these rows did not
+         */
+        @Override
+        void clear(int size) {
+            super.clear(size);
+            if (plain != null) {
+                codes = new int[plain.length];
+                dictionary = new ArrayList<>();
+                lookup = new HashMap<>();
+                plain = null;
+            } else {
+                dictionary.clear();
+                lookup.clear();
+            }
+        }
+
+        private void toPlain(int capacity) {
+            plain = new String[capacity];
+            for (int i = 0; i < capacity; i++) {
+                if (!isNull(i)) {
+                    plain[i] = dictionary.get(codes[i]);
+                }
+            }
+
+            codes = null;
+            dictionary = null;
+            lookup = null;
+        }
+
+        @Override
+        Column copy(int size) {
+            final StringColumn out = new StringColumn(Math.max(1, size));
+            System.arraycopy(present, 0, out.present, 0, out.present.length);
+            if (plain != null) {
+                out.codes = null;
+                out.dictionary = null;
+                out.lookup = null;
+                out.plain = Arrays.copyOf(plain, Math.max(1, size));
+            } else {
+                System.arraycopy(codes, 0, out.codes, 0, size);
+                out.dictionary.addAll(dictionary);
+                out.lookup.putAll(lookup);
+            }
+            return out;
+        }
+    }
+
+    private static final class NodeColumn extends Column {
+
+        private JsonNode[] values;
+
+        private NodeColumn(int capacity) {
+            super(capacity);
+            values = new JsonNode[capacity];
+        }
+
+        @Override
+        void set(int row, SchemaRowCodec.Row source, int field) {
+            values[row] = source.getNode(field);
+            markPresent(row);
+        }
+
+        @Override
+        void get(int row, SchemaRowCodec.Row target, int field) {
+            target.setNode(field, values[row]);
+        }
+
+        @Override
+        void setNull(int row) {
+            super.setNull(row);
+            values[row] = null;
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void clear(int size) {
+            super.clear(size);
+            Arrays.fill(values, 0, size, null);
+        }
+
+        @Override
+        Column copy(int size) {
+            final NodeColumn out = new NodeColumn(Math.max(1, size));
+            System.arraycopy(values, 0, out.values, 0, size);
+            System.arraycopy(present, 0, out.present, 0, out.present.length);
+            return out;
+        }
+    }
+}
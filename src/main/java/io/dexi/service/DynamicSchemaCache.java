@@ -0,0 +1,184 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memoizes dynamic schema computations - the editor in dexi asks for the dynamic schema of a component again and again
+ * with the same options and input connections.
+ *
+ * Results are cached by a SHA-256 hash of the options - serialized to JSON with object fields sorted, so the order
+ * of fields does not matter - and the interned input connection schema (see {@link SchemaInterner}). Concurrent
+ * requests for the same key wait for a single computation.
+ *
+ * The returned schemas are interned - and thereby immutable - since they are shared by all callers.
+ *
+ * @param <T> The component configuration class
+ */
+public class DynamicSchemaCache<T> {
+
+    private static final byte NULL = 0;
+
+    private static final byte OBJECT = 1;
+
+    private static final byte ARRAY = 2;
+
+    private static final byte STRING = 3;
+
+    private static final byte NUMBER = 4;
+
+    private static final byte BOOLEAN = 5;
+
+    private static final byte OTHER = 6;
+
+    private final ObjectMapper objectMapper;
+
+    private final Cache<Key, Schema> cache;
+
+    public DynamicSchemaCache(ObjectMapper objectMapper, long maximumSize, long maximumAge, TimeUnit unit) {
+        this.objectMapper = objectMapper;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(maximumAge, unit)
+                .build();
+    }
+
+    /**
+     * Get the dynamic schema for the config - computing it using the loader if not cached
+     *
+     * @param loader computes the schema. Must not return null.
+     * @throws IllegalStateException if the loader returns null
+     * @throws RuntimeException thrown by the loader - checked exceptions are wrapped
+     */
+    public Schema get(DynamicSchemaConfig<T> config, SchemaLoader<T> loader) {
+        final Key key = new Key(hash(config.getOptions()), config.getCanonicalInputConnectionSchema());
+
+        try {
+            return cache.get(key, () -> load(config, loader));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Failed to compute dynamic schema", e.getCause());
+        }
+    }
+
+    private Schema load(DynamicSchemaConfig<T> config, SchemaLoader<T> loader) throws Exception {
+        final Schema schema = loader.load(config);
+        if (schema == null) {
+            final T options = config.getOptions();
+            throw new IllegalStateException("Dynamic schema loader returned null for component " +
+                    (options != null ? options.getClass().getName() : "without options"));
+        }
+
+        return SchemaInterner.intern(schema);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private HashCode hash(T options) {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        if (options == null) {
+            hasher.putByte(NULL);
+        } else {
+            hash(hasher, objectMapper.valueToTree(options));
+        }
+
+        return hasher.hash();
+    }
+
+    private static void hash(Hasher hasher, JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            hasher.putByte(NULL);
+        } else if (node.isObject()) {
+            final List<String> fieldNames = new ArrayList<>(node.size());
+            final Iterator<String> names = node.fieldNames();
+            while (names.hasNext()) {
+                fieldNames.add(names.next());
+            }
+            Collections.sort(fieldNames);
+
+            hasher.putByte(OBJECT).putInt(fieldNames.size());
+            for (String fieldName : fieldNames) {
+                putString(hasher, fieldName);
+                hash(hasher, node.get(fieldName));
+            }
+        } else if (node.isArray()) {
+            hasher.putByte(ARRAY).putInt(node.size());
+            for (JsonNode element : node) {
+                hash(hasher, element);
+            }
+        } else if (node.isTextual()) {
+            putString(hasher.putByte(STRING), node.textValue());
+        } else if (node.isNumber()) {
+            putString(hasher.putByte(NUMBER), node.asText());
+        } else if (node.isBoolean()) {
+            hasher.putByte(BOOLEAN).putBoolean(node.booleanValue());
+        } else {
+            putString(hasher.putByte(OTHER), node.asText());
+        }
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        // Length prefixed so adjacent strings can not run into each other
+        hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+    }
+
+    public interface SchemaLoader<T> {
+        Schema load(DynamicSchemaConfig<T> config) throws Exception;
+    }
+
+    private static final class Key {
+
+        private final HashCode options;
+
+        /**
+         * Interned - so compared by reference
+         */
+        private final Schema inputConnectionSchema;
+
+        private Key(HashCode options, Schema inputConnectionSchema) {
+            this.options = options;
+            this.inputConnectionSchema = inputConnectionSchema;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return options.equals(key.options) && inputConnectionSchema == key.inputConnectionSchema;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * options.hashCode() + (inputConnectionSchema != null ? inputConnectionSchema.hashCode() : 0);
+        }
+    }
+}
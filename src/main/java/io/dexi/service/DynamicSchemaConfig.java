@@ -1,6 +1,7 @@
 package io.dexi.service;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * The payload received for dynamic schema requests.
@@ -25,6 +26,8 @@ public class DynamicSchemaConfig<T> {
      */
     private Schema inputConnectionSchema;
 
+    private transient volatile Schema canonicalInputConnectionSchema;
+
     public T getOptions() {
         return options;
     }
@@ -32,4 +35,20 @@ public class DynamicSchemaConfig<T> {
     public Schema getInputConnectionSchema() {
         return inputConnectionSchema;
     }
+
+    /**
+     * The input connection schema - interned using {@link SchemaInterner}. Requests carrying equal schemas get the
+     * same immutable instance, which can be compared by reference and used as cache key.
+     *
+     * Note that this can be null
+     */
+    @JsonIgnore
+    public Schema getCanonicalInputConnectionSchema() {
+        Schema out = canonicalInputConnectionSchema;
+        if (out == null && inputConnectionSchema != null) {
+            out = SchemaInterner.intern(inputConnectionSchema);
+            canonicalInputConnectionSchema = out;
+        }
+        return out;
+    }
 }
@@ -0,0 +1,66 @@
+package io.dexi.service;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The value types of {@link Schema.Field#getType()} - grouped by how their values are represented in JSON.
+ */
+public enum FieldType {
+
+    STRING("string", "text", "html", "url", "email", "password", "enum", "date", "datetime", "time", "file", "image", "uuid"),
+
+    INTEGER("integer", "int", "long"),
+
+    NUMBER("number", "float", "double", "decimal"),
+
+    BOOLEAN("boolean", "bool", "checkbox"),
+
+    OBJECT("object", "map"),
+
+    ARRAY("array", "list"),
+
+    /**
+     * Unknown or missing types - any value is accepted
+     */
+    ANY;
+
+    private static final Map<String, FieldType> BY_NAME = new HashMap<>();
+
+    static {
+        for (FieldType type : values()) {
+            for (String name : type.names) {
+                BY_NAME.put(name, type);
+            }
+        }
+    }
+
+    private final String[] names;
+
+    FieldType(String... names) {
+        this.names = names;
+    }
+
+    /**
+     * Get the type of a field type name - case insensitive
+     *
+     * @return the type - or {@link #ANY} for unknown types
+     */
+    public static FieldType of(String name) {
+        if (name == null) {
+            return ANY;
+        }
+
+        FieldType type = BY_NAME.get(name);
+        if (type == null) {
+            type = BY_NAME.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        return type != null ? type : ANY;
+    }
+
+    public static FieldType of(Schema.Field field) {
+        return of(field.getType());
+    }
+}
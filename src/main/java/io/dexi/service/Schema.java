@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -133,6 +134,41 @@ public class Schema extends HashMap<String, Schema.Field> {
         public void setConfiguration(JsonNode configuration) {
             this.configuration = configuration;
         }
+
+        /**
+         * Fields are equal if all their values are - so schemas holding equal fields are equal
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Field)) {
+                return false;
+            }
+
+            final Field other = (Field) o;
+
+            return isRequired() == other.isRequired() &&
+                    isSecret() == other.isSecret() &&
+                    getSortOrder() == other.getSortOrder() &&
+                    Objects.equals(getTitle(), other.getTitle()) &&
+                    Objects.equals(getType(), other.getType()) &&
+                    Objects.equals(getDescription(), other.getDescription()) &&
+                    Objects.equals(getOptions(), other.getOptions()) &&
+                    Objects.equals(getDefaultValue(), other.getDefaultValue()) &&
+                    Objects.equals(getDependsOn(), other.getDependsOn()) &&
+                    Objects.equals(getConfiguration(), other.getConfiguration()) &&
+                    Objects.equals(getProperties(), other.getProperties()) &&
+                    Objects.equals(getItems(), other.getItems());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getTitle(), isRequired(), isSecret(), getType(), getDescription(), getOptions(),
+                    getSortOrder(), getDefaultValue(), getDependsOn(), getConfiguration(), getProperties(), getItems());
+        }
     }
 
 }
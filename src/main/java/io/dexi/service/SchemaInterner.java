@@ -0,0 +1,345 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Canonicalizes schemas: structurally equal schemas are interned to one shared, immutable instance.
+ *
+ * Dynamic schema requests tend to carry the same input connection schema over and over. Interned schemas are deep
+ * copies that throw {@link UnsupportedOperationException} when modified, cache their structural hash and share
+ * nested fields, nested schemas and {@code dependsOn} sets with every other interned schema they are equal to.
+ * Comparing two interned schemas is therefore a reference comparison - and caches keyed by schema instance, like
+ * {@link SchemaValidator#forSchema(Schema)}, are hit by every request carrying the same schema.
+ * Interned schemas are still equal to - and hash like - regular schemas of the same structure.
+ *
+ * Interned instances are held weakly and go away when no longer used. JSON values ({@code options},
+ * {@code defaultValue} and {@code configuration}) are copied when interning, but can not be frozen - they must not be
+ * modified.
+ */
+public final class SchemaInterner {
+
+    private static final Interner<FrozenSchema> schemas = Interners.newWeakInterner();
+
+    private static final Interner<FrozenField> fields = Interners.newWeakInterner();
+
+    private static final Interner<Set<String>> dependsOn = Interners.newWeakInterner();
+
+    private SchemaInterner() {}
+
+    /**
+     * Get the canonical instance of a schema
+     *
+     * @return an immutable schema equal to the given schema - the same instance for all equal schemas. Null if the
+     * schema is null.
+     */
+    public static Schema intern(Schema schema) {
+        if (schema == null || schema instanceof FrozenSchema) {
+            return schema;
+        }
+
+        return schemas.intern(new FrozenSchema(schema));
+    }
+
+    /**
+     * Get the canonical instance of a field
+     *
+     * @see #intern(Schema)
+     */
+    public static Schema.Field intern(Schema.Field field) {
+        if (field == null || field instanceof FrozenField) {
+            return field;
+        }
+
+        return fields.intern(new FrozenField(field));
+    }
+
+    /**
+     * @return true if the schema is the canonical instance returned by {@link #intern(Schema)}
+     */
+    public static boolean isInterned(Schema schema) {
+        return schema instanceof FrozenSchema;
+    }
+
+    private static Set<String> intern(Set<String> values) {
+        if (values == null) {
+            return null;
+        }
+
+        return dependsOn.intern(ImmutableSet.copyOf(values));
+    }
+
+    private static JsonNode copy(JsonNode node) {
+        return node != null ? node.deepCopy() : null;
+    }
+
+    private static UnsupportedOperationException frozen() {
+        return new UnsupportedOperationException("Interned schemas can not be modified");
+    }
+
+    private static final class FrozenSchema extends Schema {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int hash;
+
+        private FrozenSchema(Schema schema) {
+            for (Map.Entry<String, Field> entry : schema.entrySet()) {
+                super.put(entry.getKey(), SchemaInterner.intern(entry.getValue()));
+            }
+
+            int hash = 0;
+            for (Map.Entry<String, Field> entry : super.entrySet()) {
+                hash += entry.getKey().hashCode() ^ Objects.hashCode(entry.getValue());
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof FrozenSchema)) {
+                return super.equals(o);
+            }
+
+            final FrozenSchema other = (FrozenSchema) o;
+            if (hash != other.hash || size() != other.size()) {
+                return false;
+            }
+
+            // Fields are interned - so equal fields are the same instance
+            for (Map.Entry<String, Field> entry : super.entrySet()) {
+                final Field otherField = other.get(entry.getKey());
+                if (otherField != entry.getValue() || (otherField == null && !other.containsKey(entry.getKey()))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public Field put(String key, Field value) {
+            throw frozen();
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ? extends Field> m) {
+            throw frozen();
+        }
+
+        @Override
+        public Field remove(Object key) {
+            throw frozen();
+        }
+
+        @Override
+        public void clear() {
+            throw frozen();
+        }
+
+        @Override
+        public Field putIfAbsent(String key, Field value) {
+            throw frozen();
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            throw frozen();
+        }
+
+        @Override
+        public boolean replace(String key, Field oldValue, Field newValue) {
+            throw frozen();
+        }
+
+        @Override
+        public Field replace(String key, Field value) {
+            throw frozen();
+        }
+
+        @Override
+        public Field computeIfAbsent(String key, Function<? super String, ? extends Field> mappingFunction) {
+            throw frozen();
+        }
+
+        @Override
+        public Field computeIfPresent(String key, BiFunction<? super String, ? super Field, ? extends Field> remappingFunction) {
+            throw frozen();
+        }
+
+        @Override
+        public Field compute(String key, BiFunction<? super String, ? super Field, ? extends Field> remappingFunction) {
+            throw frozen();
+        }
+
+        @Override
+        public Field merge(String key, Field value, BiFunction<? super Field, ? super Field, ? extends Field> remappingFunction) {
+            throw frozen();
+        }
+
+        @Override
+        public void replaceAll(BiFunction<? super String, ? super Field, ? extends Field> function) {
+            throw frozen();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+
+        @Override
+        public Collection<Field> values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+
+        @Override
+        public Set<Map.Entry<String, Field>> entrySet() {
+            return Collections.unmodifiableSet(super.entrySet());
+        }
+
+        @Override
+        public Object clone() {
+            // A clone is a regular, mutable schema
+            final Schema out = new Schema();
+            for (Map.Entry<String, Field> entry : super.entrySet()) {
+                out.put(entry.getKey(), entry.getValue());
+            }
+            return out;
+        }
+    }
+
+    private static final class FrozenField extends Schema.Field {
+
+        private final int hash;
+
+        private FrozenField(Schema.Field field) {
+            super.setTitle(field.getTitle());
+            super.setRequired(field.isRequired());
+            super.setSecret(field.isSecret());
+            super.setType(field.getType());
+            super.setDescription(field.getDescription());
+            super.setOptions(copy(field.getOptions()));
+            super.setSortOrder(field.getSortOrder());
+            super.setDefaultValue(copy(field.getDefaultValue()));
+            super.setDependsOn(SchemaInterner.intern(field.getDependsOn()));
+            super.setConfiguration(copy(field.getConfiguration()));
+            super.setProperties(SchemaInterner.intern(field.getProperties()));
+            super.setItems(SchemaInterner.intern(field.getItems()));
+
+            // Same as Schema.Field#hashCode - computed once
+            this.hash = super.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof FrozenField)) {
+                return super.equals(o);
+            }
+
+            final FrozenField other = (FrozenField) o;
+
+            // Nested schemas, fields and dependsOn are interned - so equal values are the same instance
+            return hash == other.hash &&
+                    isRequired() == other.isRequired() &&
+                    isSecret() == other.isSecret() &&
+                    getSortOrder() == other.getSortOrder() &&
+                    getProperties() == other.getProperties() &&
+                    getItems() == other.getItems() &&
+                    getDependsOn() == other.getDependsOn() &&
+                    Objects.equals(getTitle(), other.getTitle()) &&
+                    Objects.equals(getType(), other.getType()) &&
+                    Objects.equals(getDescription(), other.getDescription()) &&
+                    Objects.equals(getOptions(), other.getOptions()) &&
+                    Objects.equals(getDefaultValue(), other.getDefaultValue()) &&
+                    Objects.equals(getConfiguration(), other.getConfiguration());
+        }
+
+        @Override
+        public void setProperties(Schema properties) {
+            throw frozen();
+        }
+
+        @Override
+        public void setItems(Schema.Field items) {
+            throw frozen();
+        }
+
+        @Override
+        public void setTitle(String title) {
+            throw frozen();
+        }
+
+        @Override
+        public void setRequired(boolean required) {
+            throw frozen();
+        }
+
+        @Override
+        public void setSecret(boolean secret) {
+            throw frozen();
+        }
+
+        @Override
+        public void setType(String type) {
+            throw frozen();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            throw frozen();
+        }
+
+        @Override
+        public void setOptions(JsonNode options) {
+            throw frozen();
+        }
+
+        @Override
+        public void setSortOrder(int sortOrder) {
+            throw frozen();
+        }
+
+        @Override
+        public void setDefaultValue(JsonNode defaultValue) {
+            throw frozen();
+        }
+
+        @Override
+        public void setDependsOn(Set<String> dependsOn) {
+            throw frozen();
+        }
+
+        @Override
+        public void setConfiguration(JsonNode configuration) {
+            throw frozen();
+        }
+    }
+}
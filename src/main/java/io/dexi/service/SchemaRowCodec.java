@@ -0,0 +1,435 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Reads and writes rows of a {@link Schema} as indexed records instead of {@code Map<String, Object>}.
+ *
+ * Field names are mapped to dense indexes once, when the codec is created. Integer, number and boolean fields are
+ * kept in primitive slots of the row - everything else is kept as a reference: strings as {@link String} and
+ * objects, arrays and values of unknown type as {@link JsonNode}.
+ *
+ * Look up the index of a field once with {@link #indexOf(String)} and use it for all rows. Rows can be reused when
+ * reading - see {@link #read(JsonParser, Row)}.
+ *
+ * Parsers and generators do not need a codec - JSON nodes are read and written by the codec itself.
+ *
+ * Codecs are immutable and thread-safe - rows are not.
+ */
+public final class SchemaRowCodec {
+
+    private static final Cache<Schema, SchemaRowCodec> cache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(1000)
+            .build();
+
+    /**
+     * Reads and writes JSON nodes - parsers and generators from a plain JsonFactory cannot
+     */
+    private static final ObjectMapper nodeMapper = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private final String[] names;
+
+    private final FieldType[] types;
+
+    private final Map<String, Integer> indexes;
+
+    private SchemaRowCodec(Schema schema) {
+        final List<String> fieldNames = new ArrayList<>();
+        for (Map.Entry<String, Schema.Field> entry : schema.entrySet()) {
+            if (entry.getValue() != null) {
+                fieldNames.add(entry.getKey());
+            }
+        }
+        // Stable field order - regardless of how the schema was built
+        Collections.sort(fieldNames);
+
+        names = fieldNames.toArray(new String[fieldNames.size()]);
+        types = new FieldType[names.length];
+        indexes = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            types[i] = FieldType.of(schema.get(names[i]));
+            indexes.put(names[i], i);
+        }
+    }
+
+    /**
+     * Get the codec for a schema - creating it on first use. The schema must not be modified afterwards.
+     */
+    public static SchemaRowCodec forSchema(Schema schema) {
+        try {
+            return cache.get(schema, () -> new SchemaRowCodec(schema));
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to create row codec", e.getCause());
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the index of the field - or -1 if the schema has no such field
+     */
+    public int indexOf(String fieldName) {
+        final Integer index = indexes.get(fieldName);
+        return index != null ? index : -1;
+    }
+
+    public String getFieldName(int index) {
+        return names[index];
+    }
+
+    public FieldType getFieldType(int index) {
+        return types[index];
+    }
+
+    public Row newRow() {
+        return new Row(this);
+    }
+
+    /**
+     * Reads the next row of the parser into a new row
+     *
+     * @return the row - or null if there are no more rows
+     */
+    public Row read(JsonParser parser) throws IOException {
+        final Row row = newRow();
+        return read(parser, row) ? row : null;
+    }
+
+    /**
+     * Reads the next row of the parser into the given row - clearing it first. Fields not in the schema are skipped.
+     *
+     * Expects the parser to be at - or just before - the start of the row object. The parser is left at the end of
+     * the row. Reading a list of rows can be done by advancing the parser past the start of the array first.
+     *
+     * @return false if there are no more rows
+     */
+    public boolean read(JsonParser parser, Row row) throws IOException {
+        if (row.codec != this) {
+            throw new IllegalArgumentException("Row was not created by this codec");
+        }
+
+        JsonToken token = parser.getCurrentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        if (token == JsonToken.END_OBJECT || token == JsonToken.START_ARRAY) {
+            token = parser.nextToken();
+        }
+
+        if (token == null || token == JsonToken.END_ARRAY) {
+            return false;
+        }
+
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected row object but got " + token);
+        }
+
+        row.clear();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final Integer index = indexes.get(parser.getCurrentName());
+            final JsonToken value = parser.nextToken();
+
+            if (index == null) {
+                parser.skipChildren();
+                continue;
+            }
+
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            readValue(parser, value, index, row);
+        }
+
+        return true;
+    }
+
+    private void readValue(JsonParser parser, JsonToken token, int index, Row row) throws IOException {
+        switch (types[index]) {
+            case INTEGER:
+                if (token == JsonToken.VALUE_NUMBER_INT) {
+                    row.setLong(index, parser.getLongValue());
+                } else if (token == JsonToken.VALUE_STRING) {
+                    row.setLong(index, parseLong(parser, index));
+                } else {
+                    throw mismatch(parser, token, index);
+                }
+                return;
+            case NUMBER:
+                if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                    row.setDouble(index, parser.getDoubleValue());
+                } else if (token == JsonToken.VALUE_STRING) {
+                    row.setDouble(index, parseDouble(parser, index));
+                } else {
+                    throw mismatch(parser, token, index);
+                }
+                return;
+            case BOOLEAN:
+                if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+                    row.setBoolean(index, token == JsonToken.VALUE_TRUE);
+                } else if (token == JsonToken.VALUE_STRING) {
+                    row.setBoolean(index, parseBoolean(parser, index));
+                } else {
+                    throw mismatch(parser, token, index);
+                }
+                return;
+            case STRING:
+                if (token.isScalarValue()) {
+                    row.setString(index, parser.getText());
+                } else {
+                    throw mismatch(parser, token, index);
+                }
+                return;
+            default:
+                row.setNode(index, nodeMapper.readTree(parser));
+        }
+    }
+
+    private long parseLong(JsonParser parser, int index) throws IOException {
+        try {
+            return Long.parseLong(parser.getText().trim());
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Invalid integer for field " + names[index] + ": " + parser.getText());
+        }
+    }
+
+    private double parseDouble(JsonParser parser, int index) throws IOException {
+        try {
+            return Double.parseDouble(parser.getText().trim());
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Invalid number for field " + names[index] + ": " + parser.getText());
+        }
+    }
+
+    private boolean parseBoolean(JsonParser parser, int index) throws IOException {
+        final String text = parser.getText().trim();
+        if (text.equals("true")) {
+            return true;
+        }
+        if (text.equals("false")) {
+            return false;
+        }
+        throw new JsonParseException(parser, "Invalid boolean for field " + names[index] + ": " + parser.getText());
+    }
+
+    private JsonParseException mismatch(JsonParser parser, JsonToken token, int index) {
+        return new JsonParseException(parser, "Expected " + types[index].name().toLowerCase(Locale.ROOT) +
+                " for field " + names[index] + " but got " + token);
+    }
+
+    /**
+     * Writes the row as a JSON object. Null fields are left out.
+     */
+    public void write(JsonGenerator generator, Row row) throws IOException {
+        generator.writeStartObject();
+
+        for (int i = 0; i < names.length; i++) {
+            if (row.isNull(i)) {
+                continue;
+            }
+
+            generator.writeFieldName(names[i]);
+            switch (types[i]) {
+                case INTEGER:
+                    generator.writeNumber(row.primitives[i]);
+                    break;
+                case NUMBER:
+                    generator.writeNumber(Double.longBitsToDouble(row.primitives[i]));
+                    break;
+                case BOOLEAN:
+                    generator.writeBoolean(row.primitives[i] != 0);
+                    break;
+                default:
+                    final Object value = row.references[i];
+                    if (value instanceof String) {
+                        generator.writeString((String) value);
+                    } else if (value instanceof JsonNode) {
+                        nodeMapper.writeTree(generator, (JsonNode) value);
+                    } else {
+                        nodeMapper.writeValue(generator, value);
+                    }
+            }
+        }
+
+        generator.writeEndObject();
+    }
+
+    /**
+     * Converts the row to a map - for code that still works on maps
+     */
+    public Map<String, Object> toMap(Row row) {
+        final Map<String, Object> out = new LinkedHashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            if (!row.isNull(i)) {
+                out.put(names[i], row.get(i));
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * A row of a {@link SchemaRowCodec}. Values are accessed by field index - using the getter matching the type of
+     * the field. Getting a primitive of a null field returns 0 / false.
+     */
+    public static final class Row {
+
+        private final SchemaRowCodec codec;
+
+        /**
+         * Integers, doubles (as raw long bits) and booleans (as 0 / 1) - by field index
+         */
+        private final long[] primitives;
+
+        /**
+         * Strings and JSON nodes - by field index
+         */
+        private final Object[] references;
+
+        /**
+         * Bit set of fields with a value
+         */
+        private final long[] present;
+
+        private Row(SchemaRowCodec codec) {
+            this.codec = codec;
+            this.primitives = new long[codec.names.length];
+            this.references = new Object[codec.names.length];
+            this.present = new long[(codec.names.length + 63) >>> 6];
+        }
+
+        public SchemaRowCodec getCodec() {
+            return codec;
+        }
+
+        public boolean isNull(int index) {
+            return (present[index >>> 6] & (1L << index)) == 0;
+        }
+
+        public long getLong(int index) {
+            return primitives[index];
+        }
+
+        public double getDouble(int index) {
+            return Double.longBitsToDouble(primitives[index]);
+        }
+
+        public boolean getBoolean(int index) {
+            return primitives[index] != 0;
+        }
+
+        public String getString(int index) {
+            final Object value = references[index];
+            return value instanceof JsonNode ? ((JsonNode) value).asText() : (String) value;
+        }
+
+        public JsonNode getNode(int index) {
+            return (JsonNode) references[index];
+        }
+
+        /**
+         * Get the value of any field - boxing primitives
+         */
+        public Object get(int index) {
+            if (isNull(index)) {
+                return null;
+            }
+
+            switch (codec.types[index]) {
+                case INTEGER:
+                    return getLong(index);
+                case NUMBER:
+                    return getDouble(index);
+                case BOOLEAN:
+                    return getBoolean(index);
+                default:
+                    return references[index];
+            }
+        }
+
+        public void setLong(int index, long value) {
+            primitives[index] = value;
+            markPresent(index);
+        }
+
+        public void setDouble(int index, double value) {
+            primitives[index] = Double.doubleToRawLongBits(value);
+            markPresent(index);
+        }
+
+        public void setBoolean(int index, boolean value) {
+            primitives[index] = value ? 1 : 0;
+            markPresent(index);
+        }
+
+        public void setString(int index, String value) {
+            setReference(index, value);
+        }
+
+        public void setNode(int index, JsonNode value) {
+            setReference(index, value);
+        }
+
+        /**
+         * Primitive slot as stored - for copying values without knowing their type
+         */
+        long getRaw(int index) {
+            return primitives[index];
+        }
+
+        void setRaw(int index, long value) {
+            primitives[index] = value;
+            markPresent(index);
+        }
+
+        public void setNull(int index) {
+            primitives[index] = 0;
+            references[index] = null;
+            present[index >>> 6] &= ~(1L << index);
+        }
+
+        public void clear() {
+            Arrays.fill(primitives, 0L);
+            Arrays.fill(references, null);
+            Arrays.fill(present, 0L);
+        }
+
+        private void setReference(int index, Object value) {
+            if (value == null) {
+                setNull(index);
+                return;
+            }
+
+            references[index] = value;
+            markPresent(index);
+        }
+
+        private void markPresent(int index) {
+            present[index >>> 6] |= 1L << index;
+        }
+    }
+}
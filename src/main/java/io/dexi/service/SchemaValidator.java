@@ -0,0 +1,443 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Validates rows against a {@link Schema} - checking that required fields are present and that values match the
+ * {@link FieldType} of their field, including nested {@code properties} and {@code items}.
+ *
+ * Rows are validated straight from a Jackson token stream, without building a tree. Validating a valid row allocates
+ * next to nothing - violations and their paths are only built when found. All violations of a row are reported.
+ *
+ * Validators are immutable and thread-safe. Use {@link #forSchema(Schema)} to get the cached validator of a schema -
+ * schemas must not be modified after their validator has been created.
+ */
+public final class SchemaValidator {
+
+    private static final Cache<Schema, SchemaValidator> cache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(1000)
+            .build();
+
+    private final CompiledObject root;
+
+    private SchemaValidator(Schema schema) {
+        this.root = new CompiledObject(schema);
+    }
+
+    /**
+     * Get the validator for a schema - compiling it on first use
+     */
+    public static SchemaValidator forSchema(Schema schema) {
+        try {
+            return cache.get(schema, () -> new SchemaValidator(schema));
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to compile schema", e.getCause());
+        }
+    }
+
+    /**
+     * Compiles a validator for the schema - without caching it
+     */
+    public static SchemaValidator compile(Schema schema) {
+        return new SchemaValidator(schema);
+    }
+
+    /**
+     * Validates a single row
+     *
+     * @return all violations - empty if the row is valid
+     */
+    public List<Violation> validate(JsonNode row) throws IOException {
+        try (JsonParser parser = row.traverse()) {
+            return validate(parser);
+        }
+    }
+
+    /**
+     * Validates the next row of the parser - call again with the same parser for the following row, as with
+     * {@link SchemaRowCodec#read(JsonParser)}. The parser is left at the end of the row.
+     *
+     * @return all violations - empty if the row is valid
+     */
+    public List<Violation> validate(JsonParser parser) throws IOException {
+        final Context context = new Context();
+        validateRow(parser, context);
+        return context.violations();
+    }
+
+    /**
+     * Validates a JSON array of rows - reporting each invalid row to the handler
+     *
+     * @return the number of invalid rows
+     */
+    public long validateRows(JsonParser parser, InvalidRowHandler handler) throws IOException {
+        JsonToken token = parser.getCurrentToken() != null ? parser.getCurrentToken() : parser.nextToken();
+        if (token != JsonToken.START_ARRAY) {
+            throw new IOException("Expected array of rows but got " + token);
+        }
+
+        final Context context = new Context();
+        long index = 0;
+        long invalid = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            validateRow(parser, context);
+
+            if (context.violations != null) {
+                invalid++;
+                handler.onInvalidRow(index, context.violations());
+                context.violations = null;
+            }
+            index++;
+        }
+
+        return invalid;
+    }
+
+    private void validateRow(JsonParser parser, Context context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        // Skip the end of the previous row - or the start of the array holding the rows
+        if (token == JsonToken.END_OBJECT || token == JsonToken.START_ARRAY) {
+            token = parser.nextToken();
+        }
+
+        if (token != JsonToken.START_OBJECT) {
+            context.violation("row must be an object but was " + describe(token));
+            parser.skipChildren();
+            return;
+        }
+
+        validateObject(parser, root, context);
+    }
+
+    private void validateObject(JsonParser parser, CompiledObject object, Context context) throws IOException {
+        final int seen = context.pushSeen(object.requiredWords);
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+
+            final CompiledField field = object.fields.get(name);
+            if (field == null) {
+                parser.skipChildren();
+                continue;
+            }
+
+            if (field.requiredIndex >= 0 && token != JsonToken.VALUE_NULL) {
+                context.seen[seen + (field.requiredIndex >>> 6)] |= 1L << field.requiredIndex;
+            }
+
+            context.push(name);
+            validateValue(parser, token, field, context);
+            context.pop();
+        }
+
+        for (CompiledField field : object.required) {
+            if ((context.seen[seen + (field.requiredIndex >>> 6)] & (1L << field.requiredIndex)) == 0) {
+                context.push(field.name);
+                context.violation("is required");
+                context.pop();
+            }
+        }
+
+        context.popSeen(object.requiredWords);
+    }
+
+    private void validateValue(JsonParser parser, JsonToken token, CompiledField field, Context context) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return;
+        }
+
+        switch (field.type) {
+            case STRING:
+                if (token != JsonToken.VALUE_STRING) {
+                    mismatch(parser, token, field, context);
+                }
+                return;
+            case INTEGER:
+                if (token != JsonToken.VALUE_NUMBER_INT) {
+                    mismatch(parser, token, field, context);
+                }
+                return;
+            case NUMBER:
+                if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT) {
+                    mismatch(parser, token, field, context);
+                }
+                return;
+            case BOOLEAN:
+                if (token != JsonToken.VALUE_TRUE && token != JsonToken.VALUE_FALSE) {
+                    mismatch(parser, token, field, context);
+                }
+                return;
+            case OBJECT:
+                if (token != JsonToken.START_OBJECT) {
+                    mismatch(parser, token, field, context);
+                } else if (field.properties != null) {
+                    validateObject(parser, field.properties, context);
+                } else {
+                    parser.skipChildren();
+                }
+                return;
+            case ARRAY:
+                if (token != JsonToken.START_ARRAY) {
+                    mismatch(parser, token, field, context);
+                } else if (field.items != null) {
+                    int index = 0;
+                    JsonToken item;
+                    while ((item = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        context.push(index++);
+                        validateValue(parser, item, field.items, context);
+                        context.pop();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+                return;
+            default:
+                parser.skipChildren();
+        }
+    }
+
+    private void mismatch(JsonParser parser, JsonToken token, CompiledField field, Context context) throws IOException {
+        context.violation("must be " + field.typeName + " but was " + describe(token));
+        parser.skipChildren();
+    }
+
+    private static String describe(JsonToken token) {
+        if (token == null) {
+            return "missing";
+        }
+
+        switch (token) {
+            case START_OBJECT:
+                return "object";
+            case START_ARRAY:
+                return "array";
+            case VALUE_STRING:
+                return "string";
+            case VALUE_NUMBER_INT:
+                return "integer";
+            case VALUE_NUMBER_FLOAT:
+                return "number";
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return "boolean";
+            default:
+                return token.asString() != null ? token.asString() : token.name();
+        }
+    }
+
+    public interface InvalidRowHandler {
+        void onInvalidRow(long rowIndex, List<Violation> violations) throws IOException;
+    }
+
+    /**
+     * A value violating the schema
+     */
+    public static final class Violation {
+
+        private final String path;
+
+        private final String message;
+
+        public Violation(String path, String message) {
+            this.path = path;
+            this.message = message;
+        }
+
+        /**
+         * Path to the value within the row - such as {@code address.lines[1]}
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return path.isEmpty() ? message : path + " " + message;
+        }
+    }
+
+    private static final class CompiledObject {
+
+        private final Map<String, CompiledField> fields;
+
+        private final CompiledField[] required;
+
+        /**
+         * Words of the bitmask tracking which required fields were seen - 1 for up to 64 required fields
+         */
+        private final int requiredWords;
+
+        private CompiledObject(Schema schema) {
+            fields = new HashMap<>(schema.size() * 2);
+
+            final List<CompiledField> requiredFields = new ArrayList<>();
+            for (Map.Entry<String, Schema.Field> entry : schema.entrySet()) {
+                final Schema.Field field = entry.getValue();
+                if (field == null) {
+                    continue;
+                }
+
+                final int requiredIndex = field.isRequired() ? requiredFields.size() : -1;
+                final CompiledField compiled = new CompiledField(entry.getKey(), field, requiredIndex);
+
+                fields.put(entry.getKey(), compiled);
+                if (requiredIndex >= 0) {
+                    requiredFields.add(compiled);
+                }
+            }
+
+            required = requiredFields.toArray(new CompiledField[requiredFields.size()]);
+            requiredWords = (required.length + 63) >>> 6;
+        }
+    }
+
+    private static final class CompiledField {
+
+        private final String name;
+
+        private final FieldType type;
+
+        private final String typeName;
+
+        private final int requiredIndex;
+
+        private final CompiledObject properties;
+
+        private final CompiledField items;
+
+        private CompiledField(String name, Schema.Field field, int requiredIndex) {
+            this.name = name;
+            this.type = typeOf(field);
+            this.typeName = type.name().toLowerCase(Locale.ROOT);
+            this.requiredIndex = requiredIndex;
+            this.properties = field.getProperties() != null ? new CompiledObject(field.getProperties()) : null;
+            this.items = field.getItems() != null ? new CompiledField(name, field.getItems(), -1) : null;
+        }
+
+        /**
+         * Fields without a type holding properties or items are objects or arrays - so their contents are validated
+         */
+        private static FieldType typeOf(Schema.Field field) {
+            final FieldType type = FieldType.of(field);
+            if (type != FieldType.ANY) {
+                return type;
+            }
+
+            if (field.getProperties() != null) {
+                return FieldType.OBJECT;
+            }
+
+            return field.getItems() != null ? FieldType.ARRAY : FieldType.ANY;
+        }
+    }
+
+    /**
+     * State of a single validation: current path, required field bitmasks and violations found
+     */
+    private static final class Context {
+
+        private Object[] path = new Object[16];
+
+        private int depth;
+
+        /**
+         * Stack of required field bitmasks - one slice per object being validated
+         */
+        private long[] seen = new long[8];
+
+        private int seenTop;
+
+        private List<Violation> violations;
+
+        private void push(String name) {
+            ensurePathCapacity();
+            path[depth++] = name;
+        }
+
+        private void push(int index) {
+            ensurePathCapacity();
+            // Boxing only happens inside arrays - and small indexes are cached
+            path[depth++] = index;
+        }
+
+        private void pop() {
+            path[--depth] = null;
+        }
+
+        private void ensurePathCapacity() {
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+        }
+
+        /**
+         * Reserves a cleared bitmask on the stack
+         *
+         * @return offset of the bitmask in {@link #seen}
+         */
+        private int pushSeen(int words) {
+            final int offset = seenTop;
+            if (offset + words > seen.length) {
+                seen = Arrays.copyOf(seen, Math.max(seen.length * 2, offset + words));
+            }
+            Arrays.fill(seen, offset, offset + words, 0L);
+            seenTop += words;
+            return offset;
+        }
+
+        private void popSeen(int words) {
+            seenTop -= words;
+        }
+
+        private void violation(String message) {
+            if (violations == null) {
+                violations = new ArrayList<>();
+            }
+            violations.add(new Violation(path(), message));
+        }
+
+        private List<Violation> violations() {
+            return violations != null ? violations : Collections.emptyList();
+        }
+
+        private String path() {
+            final StringBuilder out = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                final Object segment = path[i];
+                if (segment instanceof Integer) {
+                    out.append('[').append(segment).append(']');
+                } else {
+                    if (out.length() > 0) {
+                        out.append('.');
+                    }
+                    out.append(segment);
+                }
+            }
+
+            return out.toString();
+        }
+    }
+}
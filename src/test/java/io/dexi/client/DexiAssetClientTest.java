@@ -0,0 +1,138 @@
+package io.dexi.client;
+
+import io.dexi.service.DexiAssetReference;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DexiAssetClientTest {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private DexiClientFactory clientFactory;
+
+    @Before
+    public void setup() {
+        clientFactory = new DexiClientFactory("http://localhost:1/", DexiAuth.from("account-id", "api-key"));
+        clientFactory.setAssetResolver(this::lookup);
+    }
+
+    private List<DexiAssetReference> lookup(DexiClientFactory.DexiClient client, List<DexiAssetReference> references) {
+        List<String> batch = new ArrayList<>();
+        List<DexiAssetReference> out = new ArrayList<>();
+        for (DexiAssetReference reference : references) {
+            batch.add(reference.getType() + " " + reference.getId());
+            if (reference.getId().startsWith("missing")) {
+                out.add(null);
+            } else {
+                DexiAssetReference found = reference(reference.getType(), reference.getId());
+                found.setName("Name of " + reference.getId() + " in " + client.activationId);
+                out.add(found);
+            }
+        }
+        batches.add(batch);
+        return out;
+    }
+
+    private static DexiAssetReference reference(String type, String id) {
+        DexiAssetReference reference = new DexiAssetReference();
+        reference.setType(type);
+        reference.setId(id);
+        return reference;
+    }
+
+    @Test
+    public void test_assets_are_deduplicated_batched_and_cached() throws Exception {
+        DexiAssetClient assets = clientFactory.create("activation-id").assets();
+
+        List<DexiAssetReference> resolved = assets.resolveAll(Arrays.asList(reference("robot", "r1"),
+                reference("dataset", "d1"), reference("robot", "r1"), reference("dataset", "missing-1")));
+
+        assertEquals(4, resolved.size());
+        assertEquals("Name of r1 in activation-id", resolved.get(0).getName());
+        assertEquals("Name of d1 in activation-id", resolved.get(1).getName());
+        assertEquals("Name of r1 in activation-id", resolved.get(2).getName());
+        assertNull(resolved.get(3));
+        assertEquals(Arrays.asList(Arrays.asList("robot r1", "dataset d1", "dataset missing-1")), batches);
+
+        assertEquals("Name of d1 in activation-id", assets.resolve(reference("dataset", "d1")).getName());
+        assertNull(assets.resolve(reference("dataset", "missing-1")));
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void test_concurrent_callers_look_up_an_asset_once() throws Exception {
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        clientFactory.setAssetResolver((client, references) -> {
+            resolving.countDown();
+            try {
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return lookup(client, references);
+        });
+
+        DexiAssetClient assets = clientFactory.create("activation-id").assets();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<DexiAssetReference> first = executor.submit(() -> assets.resolve(reference("robot", "r1")));
+            assertTrue(resolving.await(10, TimeUnit.SECONDS));
+
+            Future<DexiAssetReference> second = executor.submit(() -> assets.resolve(reference("robot", "r1")));
+            release.countDown();
+
+            assertEquals("r1", first.get(10, TimeUnit.SECONDS).getId());
+            assertEquals("r1", second.get(10, TimeUnit.SECONDS).getId());
+            assertEquals(1, batches.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_failed_batch_is_not_cached() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        clientFactory.setAssetResolver((client, references) -> {
+            if (failing.get()) {
+                throw new IOException("unavailable");
+            }
+            return lookup(client, references);
+        });
+
+        DexiAssetClient assets = clientFactory.create("activation-id").assets();
+        try {
+            assets.resolveAll(Arrays.asList(reference("robot", "r1"), reference("dataset", "d1")));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertEquals("unavailable", e.getMessage());
+        }
+
+        failing.set(false);
+        assertEquals("r1", assets.resolve(reference("robot", "r1")).getId());
+        assertEquals(Arrays.asList(Arrays.asList("robot r1")), batches);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_lookup_without_resolver_is_rejected() throws Exception {
+        clientFactory.setAssetResolver(null);
+        clientFactory.create("activation-id").assets().resolve(reference("robot", "r1"));
+    }
+}
@@ -0,0 +1,255 @@
+package io.dexi.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sun.net.httpserver.HttpServer;
+import io.dexi.service.DexiPayloadHeaders;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DexiClientFactoryTest {
+
+    private HttpServer server;
+
+    private final List<String> accounts = new CopyOnWriteArrayList<>();
+
+    private final List<String> files = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch held = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private DexiAuthRegistry registry;
+
+    private DexiClientFactory clientFactory;
+
+    @Before
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/apps/", exchange -> {
+            accounts.add(exchange.getRequestHeaders().getFirst(DexiAuth.HEADER_ACCOUNT) + "/" +
+                    exchange.getRequestHeaders().getFirst(DexiAuth.HEADER_ACTIVATION));
+
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null) {
+                files.add(exchange.getRequestHeaders().getFirst(DexiAuth.HEADER_ACTIVATION) + " " + query);
+                if (query.endsWith("=hold")) {
+                    held.countDown();
+                    await(release);
+                }
+            }
+
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        registry = DexiAuthRegistry.of(DexiAuth.from("account-1", "key-1"), DexiAuth.from("account-2", "key-2"));
+        clientFactory = new DexiClientFactory("http://localhost:" + server.getAddress().getPort() + "/", registry);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitWaiting(DexiRequestScheduler scheduler, int waiting) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (scheduler.getWaitingCount() < waiting) {
+            assertTrue("Requests not waiting in the factory's scheduler", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private Thread download(DexiClientFactory.DexiClient client, String fileId) {
+        Thread thread = new Thread(() -> {
+            try (DexiFileClient.FileHandle file = client.files().getFileFromFieldValue("FILE:text/plain;2;" + fileId)) {
+                file.getStream().read();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void test_clients_are_cached_per_account_and_activation() throws Exception {
+        DexiClientFactory.DexiClient first = clientFactory.create("account-1", "activation");
+        DexiClientFactory.DexiClient second = clientFactory.create("account-2", "activation");
+
+        assertSame(first, clientFactory.create("account-1", "activation"));
+        assertNotSame(first, second);
+
+        first.apps().getActivationConfig(Object.class);
+        second.apps().getActivationConfig(Object.class);
+        assertEquals("account-1/activation", accounts.get(0));
+        assertEquals("account-2/activation", accounts.get(1));
+
+        registry.register("account-1", "new-key");
+        assertNotSame(first, clientFactory.create("account-1", "activation"));
+    }
+
+    @Test
+    public void test_clients_share_transport() {
+        OkHttpClient first = clientFactory.create("account-1", "a").httpClient;
+        OkHttpClient second = clientFactory.create("account-2", "b").httpClient;
+
+        assertSame(first.connectionPool(), second.connectionPool());
+        assertSame(first.dispatcher(), second.dispatcher());
+    }
+
+    public interface ActivationService {
+        @GET("apps/support/activations/{activationId}/configuration")
+        Call<ResponseBody> getConfiguration(@Path("activationId") String activationId);
+    }
+
+    @Test
+    public void test_subclasses_can_customize_retrofit() throws Exception {
+        DexiClientFactory singleAccount = new DexiClientFactory("http://localhost:" + server.getAddress().getPort() + "/",
+                DexiAuth.from("account-1", "key-1"));
+        AtomicInteger built = new AtomicInteger();
+
+        DexiClientFactory.DexiClient client = singleAccount.new DexiClient("activation") {
+            @Override
+            protected Retrofit buildRetrofit(DexiAuth auth, String baseUrl) {
+                built.incrementAndGet();
+                return super.buildRetrofit(auth, baseUrl);
+            }
+        };
+
+        assertEquals(0, built.get());
+        assertTrue(client.create(ActivationService.class).getConfiguration("activation").execute().isSuccessful());
+        assertTrue(client.create(ActivationService.class).getConfiguration("activation").execute().isSuccessful());
+
+        assertEquals(1, built.get());
+        assertSame(client.getRetrofit(), client.getRetrofit());
+        assertEquals(Arrays.asList("account-1/activation", "account-1/activation"), accounts);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_unknown_account_is_rejected() {
+        clientFactory.create("account-3", "activation");
+    }
+
+    @Test
+    public void test_clients_share_request_limit_and_take_turns() throws Exception {
+        clientFactory.setMaxConcurrentRequests(1);
+        DexiRequestScheduler scheduler = clientFactory.getRequestScheduler();
+
+        DexiClientFactory.DexiClient first = clientFactory.create("account-1", "a");
+        DexiClientFactory.DexiClient second = clientFactory.create("account-1", "b");
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(download(first, "hold"));
+        await(held);
+
+        // Queued while the limit is reached - a1 and a2 before b1
+        threads.add(download(first, "a1"));
+        awaitWaiting(scheduler, 1);
+        threads.add(download(first, "a2"));
+        awaitWaiting(scheduler, 2);
+        threads.add(download(second, "b1"));
+        awaitWaiting(scheduler, 3);
+
+        assertEquals(1, scheduler.getInFlightCount());
+
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(Arrays.asList("a fileId=hold", "a fileId=a1", "b fileId=b1", "a fileId=a2"), files);
+        assertEquals(0, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void test_identical_requests_of_clients_are_coalesced() throws Exception {
+        DexiAuth auth = registry.get("account-1");
+        DexiClientFactory.DexiClient first = clientFactory.new DexiClient(auth, "a");
+        DexiClientFactory.DexiClient second = clientFactory.new DexiClient(auth, "a");
+
+        Thread leader = download(first, "hold");
+        await(held);
+
+        Thread follower = download(second, "hold");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (follower.getState() != Thread.State.WAITING) {
+            assertTrue("Request not waiting for the identical request", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        release.countDown();
+        leader.join(10000);
+        follower.join(10000);
+
+        assertEquals(Collections.singletonList("a fileId=hold"), files);
+    }
+
+    public static class Config {
+        public String name;
+    }
+
+    private static DexiClientFactory.HttpRequest header(String json) {
+        return headerName -> DexiPayloadHeaders.CONFIGURATION.equals(headerName) ? json : null;
+    }
+
+    @Test
+    public void test_configuration_is_bound_to_new_object_per_call() throws Exception {
+        Config config = clientFactory.getConfiguration(header("{\"name\":\"first\"}"), Config.class);
+        assertEquals("first", config.name);
+        config.name = "changed";
+
+        Config again = clientFactory.getConfiguration(header("{\"name\":\"first\"}"), Config.class);
+        assertNotSame(config, again);
+        assertEquals("first", again.name);
+        assertEquals("second", clientFactory.getConfiguration(header("{\"name\":\"second\"}"), Config.class).name);
+    }
+
+    @Test
+    public void test_missing_configuration_header_gives_null() throws Exception {
+        assertNull(clientFactory.getConfiguration(header(null), Config.class));
+        assertNull(clientFactory.getConfiguration(header("  "), Config.class));
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void test_invalid_configuration_header_throws_parse_error() throws Exception {
+        clientFactory.getConfiguration(header("{\"name\":"), Config.class);
+    }
+}
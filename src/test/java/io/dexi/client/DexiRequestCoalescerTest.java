@@ -0,0 +1,134 @@
+package io.dexi.client;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DexiRequestCoalescerTest {
+
+    private HttpServer server;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final CountDownLatch received = new CountDownLatch(1);
+
+    private final CountDownLatch respond = new CountDownLatch(1);
+
+    private final byte[] file = new byte[256 * 1024];
+
+    private DexiRequestCoalescer coalescer;
+
+    private OkHttpClient httpClient;
+
+    private String url;
+
+    @Before
+    public void setup() throws Exception {
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (byte) i;
+        }
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/file", exchange -> {
+            requests.incrementAndGet();
+            received.countDown();
+            try {
+                respond.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, file.length);
+            exchange.getResponseBody().write(file);
+            exchange.close();
+        });
+        server.start();
+
+        url = "http://localhost:" + server.getAddress().getPort() + "/file";
+        coalescer = new DexiRequestCoalescer();
+        httpClient = new OkHttpClient.Builder().addInterceptor(coalescer).build();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private Thread download(List<byte[]> bodies) {
+        Thread thread = new Thread(() -> {
+            try (Response response = httpClient.newCall(new Request.Builder().url(url).build()).execute()) {
+                bodies.add(response.body().bytes());
+            } catch (Exception e) {
+                bodies.add(new byte[0]);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void test_identical_requests_in_flight_share_one_call() throws Exception {
+        List<byte[]> bodies = new CopyOnWriteArrayList<>();
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(download(bodies));
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 4; i++) {
+            Thread follower = download(bodies);
+            while (follower.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            threads.add(follower);
+        }
+
+        respond.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(1, requests.get());
+        assertEquals(5, bodies.size());
+        for (byte[] body : bodies) {
+            assertArrayEquals(file, body);
+        }
+        assertEquals(0, coalescer.getInFlightCount());
+
+        // Requests after the response arrived are sent again
+        try (Response response = httpClient.newCall(new Request.Builder().url(url).build()).execute()) {
+            assertEquals(file.length, response.body().bytes().length);
+        }
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void test_requests_are_sent_when_disabled() throws Exception {
+        coalescer.setEnabled(false);
+        respond.countDown();
+
+        List<byte[]> bodies = new CopyOnWriteArrayList<>();
+        for (Thread thread : Arrays.asList(download(bodies), download(bodies))) {
+            thread.join(10000);
+        }
+
+        assertEquals(2, requests.get());
+    }
+}
@@ -0,0 +1,114 @@
+package io.dexi.client;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DexiRequestSchedulerTest {
+
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+    private Thread waitFor(DexiRequestScheduler scheduler, DexiRequestScheduler.Priority priority, String activationId,
+                           String name, int waitingBefore) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                scheduler.acquire(priority, activationId);
+                order.add(name);
+                scheduler.release();
+            } catch (InterruptedException e) {
+                order.add(name + " interrupted");
+            }
+        });
+        thread.start();
+
+        while (scheduler.getWaitingCount() == waitingBefore) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+
+    @Test
+    public void test_waiting_requests_are_served_by_priority_and_activation() throws Exception {
+        DexiRequestScheduler scheduler = new DexiRequestScheduler(1);
+        scheduler.acquire(DexiRequestScheduler.Priority.DEFAULT, "a");
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(waitFor(scheduler, DexiRequestScheduler.Priority.BULK, "a", "bulk a1", 0));
+        threads.add(waitFor(scheduler, DexiRequestScheduler.Priority.BULK, "a", "bulk a2", 1));
+        threads.add(waitFor(scheduler, DexiRequestScheduler.Priority.BULK, "b", "bulk b1", 2));
+        threads.add(waitFor(scheduler, DexiRequestScheduler.Priority.INTERACTIVE, "a", "interactive a1", 3));
+
+        scheduler.release();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(Arrays.asList("interactive a1", "bulk a1", "bulk b1", "bulk a2"), order);
+        assertEquals(0, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void test_interrupted_waiter_gives_up_its_place() throws Exception {
+        DexiRequestScheduler scheduler = new DexiRequestScheduler(1);
+        scheduler.acquire(DexiRequestScheduler.Priority.DEFAULT, "a");
+
+        Thread waiting = waitFor(scheduler, DexiRequestScheduler.Priority.DEFAULT, "a", "a1", 0);
+        waiting.interrupt();
+        waiting.join(10000);
+
+        assertEquals(0, scheduler.getWaitingCount());
+        scheduler.release();
+        assertEquals(0, scheduler.getInFlightCount());
+        assertEquals(Collections.singletonList("a1 interrupted"), order);
+    }
+
+    @Test
+    public void test_priority_is_read_from_header_and_not_sent() throws Exception {
+        DexiRequestScheduler scheduler = new DexiRequestScheduler(1);
+        List<Request> sent = new ArrayList<>();
+
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(scheduler)
+                .addInterceptor(chain -> {
+                    sent.add(chain.request());
+                    return new Response.Builder()
+                            .request(chain.request())
+                            .protocol(Protocol.HTTP_1_1)
+                            .code(204)
+                            .message("No Content")
+                            .body(ResponseBody.create(null, ""))
+                            .build();
+                })
+                .build();
+
+        Request request = new Request.Builder()
+                .url("http://localhost/files")
+                .header(DexiRequestScheduler.HEADER_PRIORITY, DexiRequestScheduler.Priority.BULK.name())
+                .tag("app tag")
+                .build();
+        assertEquals(DexiRequestScheduler.Priority.BULK, DexiRequestScheduler.priorityOf(request));
+
+        client.newCall(request).execute().close();
+
+        assertEquals(1, sent.size());
+        assertNull(sent.get(0).header(DexiRequestScheduler.HEADER_PRIORITY));
+        assertEquals("app tag", sent.get(0).tag());
+        assertEquals(0, scheduler.getInFlightCount());
+
+        assertEquals(DexiRequestScheduler.Priority.DEFAULT, DexiRequestScheduler.priorityOf(new Request.Builder()
+                .url("http://localhost/files")
+                .header(DexiRequestScheduler.HEADER_PRIORITY, "urgent")
+                .build()));
+    }
+}
@@ -4,19 +4,25 @@ import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.junit.After;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
-import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static io.dexi.config.DexiConfig.ENVIRONMENT_VARIABLE_DEXI_APP_PREFIX;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class DexiConfigIT {
 
     @After
-    public void clearProperties() {
-        DexiConfig.getProperties().clear();
+    public void resetConfiguration() {
+        DexiConfig.reset();
     }
 
     @Test
@@ -25,8 +31,8 @@ public class DexiConfigIT {
 
         DexiConfig.load();
 
-        Properties properties = DexiConfig.getProperties();
-        assertEquals(4, properties.keySet().size());
+        DexiConfigSnapshot snapshot = DexiConfig.getSnapshot();
+        assertEquals(4, snapshot.keySet().size());
     }
 
     // TODO: make URL used in this test publicly available
@@ -36,8 +42,8 @@ public class DexiConfigIT {
 
         DexiConfig.load();
 
-        Properties properties = DexiConfig.getProperties();
-        assertEquals(3, properties.keySet().size());
+        DexiConfigSnapshot snapshot = DexiConfig.getSnapshot();
+        assertEquals(3, snapshot.keySet().size());
     }
 
     @Test
@@ -63,18 +69,52 @@ public class DexiConfigIT {
 
         DexiConfig.load();
 
-        Properties properties = DexiConfig.getProperties();
-        Set<Object> keys = properties.keySet();
+        DexiConfigSnapshot snapshot = DexiConfig.getSnapshot();
+        Set<String> keys = snapshot.keySet();
         assertEquals(4, keys.size());
 
-        String baseUrlActual = properties.getProperty(section + "." + "baseUrl");
+        String baseUrlActual = snapshot.getProperty(section + "." + "baseUrl");
         assertEquals(baseUrlPropertyValue, baseUrlActual);
 
-        String accountActual = properties.getProperty(section + "." + "account");
+        String accountActual = snapshot.getProperty(section + "." + "account");
         assertEquals(accountPropertyValue, accountActual);
 
-        String apiKeyActual = properties.getProperty(section + "." + "apiKey");
+        String apiKeyActual = snapshot.getProperty(section + "." + "apiKey");
         assertEquals(apiKeyPropertyValue, apiKeyActual);
     }
 
-}
+    @Test
+    public void test_configuration_is_reloaded_when_file_changes() throws Exception {
+        File file = File.createTempFile("dexi-config", ".yml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "watched:\n  value: first\n".getBytes(StandardCharsets.UTF_8));
+        System.setProperty(DexiConfig.ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_NAME, file.getAbsolutePath());
+
+        DexiConfig.load();
+        assertEquals("first", DexiConfig.getSnapshot().getProperty("watched.value"));
+
+        CountDownLatch changed = new CountDownLatch(1);
+        DexiConfig.ChangeListener listener = (previous, current) -> changed.countDown();
+        DexiConfig.addChangeListener(listener);
+
+        try (DexiConfigWatcher watcher = DexiConfig.watch()) {
+            Files.write(file.toPath(), "watched:\n  value: second\n".getBytes(StandardCharsets.UTF_8));
+
+            assertTrue(changed.await(10, TimeUnit.SECONDS));
+            assertEquals("second", DexiConfig.getSnapshot().getProperty("watched.value"));
+        } finally {
+            DexiConfig.removeChangeListener(listener);
+        }
+    }
+
+    @Test
+    public void test_reset_forgets_configuration() throws Exception {
+        System.setProperty(DexiConfig.ENVIRONMENT_VARIABLE_DEXI_APP_CREDENTIALS_NAME, "classpath:/test-config.yml");
+
+        DexiConfig.load();
+        assertFalse(DexiConfig.getSnapshot().keySet().isEmpty());
+
+        DexiConfig.reset();
+        assertTrue(DexiConfig.getSnapshot().keySet().isEmpty());
+    }
+}
\ No newline at end of file
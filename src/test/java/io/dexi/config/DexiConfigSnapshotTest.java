@@ -0,0 +1,63 @@
+package io.dexi.config;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DexiConfigSnapshotTest {
+
+    private DexiConfigSnapshot snapshot(String... keyValues) {
+        final Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            values.put(keyValues[i], keyValues[i + 1]);
+        }
+        return new DexiConfigSnapshot(values, null);
+    }
+
+    @Test
+    public void test_section_is_bound_to_pojo_once() {
+        DexiConfigSnapshot snapshot = snapshot(
+                "google.clientId", "client",
+                "google.timeout", "30",
+                "google.oauth.scope", "email",
+                "google.unknown", "ignored",
+                "dexi.account", "account");
+
+        GoogleConfig config = snapshot.getSection("google", GoogleConfig.class);
+        assertEquals("client", config.clientId);
+        assertEquals(30, config.timeout);
+        assertEquals("email", config.oauth.scope);
+
+        assertSame(config, snapshot.getSection("google", GoogleConfig.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_interfaces_are_rejected() {
+        snapshot("google.clientId", "client").getSection("google", GoogleSection.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_conversion_errors_fail_binding() {
+        snapshot("google.timeout", "soon").getSection("google", GoogleConfig.class);
+    }
+
+    public static class GoogleConfig {
+        public String clientId;
+
+        public int timeout;
+
+        public OAuthConfig oauth;
+    }
+
+    public static class OAuthConfig {
+        public String scope;
+    }
+
+    public interface GoogleSection {
+        String getClientId();
+    }
+}
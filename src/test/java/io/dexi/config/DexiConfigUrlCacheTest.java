@@ -0,0 +1,126 @@
+package io.dexi.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DexiConfigUrlCacheTest {
+
+    private HttpServer server;
+
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private volatile String content = "dexi:\n  account: first\n";
+
+    private File directory;
+
+    private String url;
+
+    @Before
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/config.yml", exchange -> {
+            String etag = "\"" + content.hashCode() + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                downloads.incrementAndGet();
+                byte[] body = content.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        url = "http://localhost:" + server.getAddress().getPort() + "/config.yml";
+        directory = Files.createTempDirectory("dexi-config-cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private String cached(DexiConfigUrlCache cache) throws Exception {
+        return new String(Files.readAllBytes(cache.getCachedFile(url).toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void test_copy_is_revalidated_with_etag() throws Exception {
+        DexiConfigUrlCache cache = new DexiConfigUrlCache(directory);
+        assertFalse(cache.hasCachedCopy(url));
+
+        assertTrue(cache.fetch(url));
+        assertTrue(cache.hasCachedCopy(url));
+        assertEquals(content, cached(cache));
+
+        assertFalse(cache.fetch(url));
+        assertEquals(1, downloads.get());
+        assertEquals(1, notModified.get());
+
+        content = "dexi:\n  account: second\n";
+        CountDownLatch changed = new CountDownLatch(1);
+        cache.refreshInBackground(url, changed::countDown);
+
+        assertTrue(changed.await(10, TimeUnit.SECONDS));
+        assertEquals("dexi:\n  account: second\n", cached(cache));
+    }
+
+    @Test
+    public void test_copy_is_kept_when_host_is_down() throws Exception {
+        DexiConfigUrlCache cache = new DexiConfigUrlCache(directory);
+        cache.fetch(url);
+        server.stop(0);
+
+        try {
+            cache.fetch(url);
+        } catch (java.io.IOException expected) {
+        }
+
+        assertTrue(cache.hasCachedCopy(url));
+        assertEquals("dexi:\n  account: first\n", cached(cache));
+    }
+
+    @Test
+    public void test_copies_are_only_readable_by_owner() throws Exception {
+        Assume.assumeTrue(directory.toPath().getFileSystem().supportedFileAttributeViews().contains("posix"));
+
+        File cacheDirectory = new File(directory, "cache");
+        DexiConfigUrlCache cache = new DexiConfigUrlCache(cacheDirectory);
+        cache.fetch(url);
+
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(cacheDirectory.toPath()));
+        for (File file : cacheDirectory.listFiles()) {
+            assertEquals(file.getName(), PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file.toPath()));
+        }
+
+        for (File file : cacheDirectory.listFiles()) {
+            file.delete();
+        }
+        cacheDirectory.delete();
+    }
+}
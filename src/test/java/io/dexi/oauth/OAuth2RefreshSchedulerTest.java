@@ -0,0 +1,98 @@
+package io.dexi.oauth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OAuth2RefreshSchedulerTest {
+
+    private final OAuthEncryptionService encryptionService = new OAuthEncryptionService("0123456789abcdef0123456789abcdef");
+
+    private final ConcurrentMap<String, EncryptedOAuthTokens> refreshed = new ConcurrentHashMap<>();
+
+    private OAuth2RefreshScheduler scheduler;
+
+    @Before
+    public void setup() {
+        scheduler = new OAuth2RefreshScheduler(encryptionService, tokens -> {
+            OAuth2Tokens next = new OAuth2Tokens();
+            next.setAccessToken(tokens.getAccessToken() + "-refreshed");
+            next.setExpiresInSeconds(3600L);
+            return next;
+        }, refreshed::put, 300, 60, 1);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.close();
+    }
+
+    private EncryptedOAuthTokens tokens(long expiresInSeconds) {
+        OAuth2Tokens tokens = new OAuth2Tokens();
+        tokens.setAccessToken("access");
+        tokens.setRefreshToken("refresh");
+        EncryptedOAuthTokens encrypted = encryptionService.encrypt(tokens);
+        encrypted.setExpiresInSeconds(expiresInSeconds);
+        return encrypted;
+    }
+
+    @Test
+    public void test_delay_is_jittered_within_bounds() {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long delay = scheduler.getRefreshDelaySeconds(3600);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+
+        assertTrue("Earliest refresh " + min, min >= 3600 - 300 - 60);
+        assertTrue("Latest refresh " + max, max <= 3600 - 300);
+        assertTrue("No jitter", min < max);
+    }
+
+    @Test
+    public void test_short_lived_tokens_are_not_refreshed_back_to_back() {
+        assertEquals(150, scheduler.getRefreshDelaySeconds(300));
+        assertEquals(10, scheduler.getRefreshDelaySeconds(5));
+        assertEquals(10, scheduler.getRefreshDelaySeconds(0));
+
+        for (long expiresIn = 0; expiresIn <= 400; expiresIn++) {
+            assertTrue(scheduler.getRefreshDelaySeconds(expiresIn) >= 10);
+        }
+    }
+
+    @Test
+    public void test_cancelled_tokens_are_no_longer_tracked() {
+        assertTrue(scheduler.schedule("connection", tokens(3600)));
+        assertEquals(1, scheduler.size());
+
+        scheduler.cancel("connection");
+
+        assertEquals(0, scheduler.size());
+        assertNull(scheduler.refresh("connection"));
+    }
+
+    @Test
+    public void test_refresh_hands_tokens_to_listener_and_keeps_tracking() throws Exception {
+        scheduler.schedule("connection", tokens(3600));
+
+        CompletableFuture<EncryptedOAuthTokens> future = scheduler.refresh("connection");
+        EncryptedOAuthTokens result = future.get(10, TimeUnit.SECONDS);
+
+        assertEquals(result, refreshed.get("connection"));
+        OAuth2Tokens decrypted = encryptionService.decrypt(result);
+        assertEquals("access-refreshed", decrypted.getAccessToken());
+        assertEquals("refresh", decrypted.getRefreshToken());
+        assertEquals(1, scheduler.size());
+    }
+}
@@ -0,0 +1,253 @@
+package io.dexi.oauth;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OAuthEncryptionServiceTest {
+
+    private static final String KEY = "0123456789abcdef0123456789abcdef";
+
+    @Test
+    public void test_round_trip_with_every_supported_cipher_suite() {
+        for (OAuthCipherSuite suite : OAuthCipherSuite.values()) {
+            if (!suite.isSupported()) {
+                continue;
+            }
+
+            OAuthEncryptionService service = new OAuthEncryptionService(KEY, suite);
+
+            EncryptedOAuthTokens encrypted = service.encrypt(oauth2Tokens("access", "refresh"));
+            assertTrue(encrypted.getPayload().startsWith(OAuthEncryptionService.PAYLOAD_PREFIX));
+
+            for (int i = 0; i < 2; i++) {
+                OAuth2Tokens decrypted = service.decrypt(encrypted);
+                assertEquals("access", decrypted.getAccessToken());
+                assertEquals("refresh", decrypted.getRefreshToken());
+            }
+        }
+    }
+
+    @Test
+    public void test_payloads_from_other_suites_can_be_decrypted() {
+        OAuthEncryptionService gcm = new OAuthEncryptionService(KEY, OAuthCipherSuite.AES_GCM);
+        if (!OAuthCipherSuite.CHACHA20_POLY1305.isSupported()) {
+            return;
+        }
+        OAuthEncryptionService chacha = new OAuthEncryptionService(KEY, OAuthCipherSuite.CHACHA20_POLY1305);
+
+        EncryptedOAuthTokens encrypted = chacha.encrypt(oauth2Tokens("access", "refresh"));
+
+        assertEquals("access", gcm.decrypt(encrypted).getAccessToken());
+    }
+
+    @Test
+    public void test_tokens_with_any_content_survive_a_round_trip() {
+        OAuthEncryptionService service = new OAuthEncryptionService(KEY);
+
+        String[][] pairs = {
+                {"access:with:colons", "refresh:"},
+                {"", ":"},
+                {null, "refresh"},
+                {"access", null},
+                {"\u00e6\u00f8\u00e5\u0000", StringUtils.repeat("x", 70000)}
+        };
+
+        for (String[] pair : pairs) {
+            OAuth2Tokens decrypted = service.decrypt(service.encrypt(oauth2Tokens(pair[0], pair[1])));
+            assertEquals(pair[0], decrypted.getAccessToken());
+            assertEquals(pair[1], decrypted.getRefreshToken());
+        }
+    }
+
+    @Test
+    public void test_round_trip_from_many_threads() throws Exception {
+        OAuthEncryptionService service = new OAuthEncryptionService(KEY);
+        EncryptedOAuthTokens shared = service.encrypt(oauth2Tokens("shared-access", "shared-refresh"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        String access = "access-" + thread + "-" + i;
+                        OAuth2Tokens decrypted = service.decrypt(service.encrypt(oauth2Tokens(access, "refresh")));
+                        assertEquals(access, decrypted.getAccessToken());
+                        assertEquals("refresh", decrypted.getRefreshToken());
+
+                        assertEquals("shared-access", service.decrypt(shared).getAccessToken());
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_cached_tokens_are_bounded_by_token_expiry() {
+        OAuthEncryptionService service = new OAuthEncryptionService(KEY);
+        OAuthTokenCache cache = new OAuthTokenCache(10, 1, TimeUnit.MINUTES);
+        service.setTokenCache(cache);
+
+        EncryptedOAuthTokens encrypted = service.encrypt(oauth2Tokens("access", "refresh"));
+        encrypted.setExpiresInSeconds(3600L);
+
+        assertEquals("access", service.decrypt(encrypted).getAccessToken());
+        assertEquals("access", service.decrypt(encrypted).getAccessToken());
+        assertEquals(1, cache.size());
+
+        EncryptedOAuthTokens expired = service.encrypt(oauth2Tokens("expired", "refresh"));
+        expired.setExpiresInSeconds(0L);
+
+        assertEquals("expired", service.decrypt(expired).getAccessToken());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void test_tokens_outliving_the_cache_are_cached_until_the_cache_expires_them() {
+        OAuthTokenCache cache = new OAuthTokenCache(10, 1, TimeUnit.MINUTES);
+        AtomicInteger decrypted = new AtomicInteger();
+        Function<String, String[]> decryptor = payload -> {
+            decrypted.incrementAndGet();
+            return new String[] {"access", "refresh"};
+        };
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("access", cache.get("payload", Long.MAX_VALUE, decryptor)[0]);
+            assertEquals("access", cache.get("other payload", TimeUnit.DAYS.toSeconds(365), decryptor)[0]);
+        }
+
+        assertEquals(2, decrypted.get());
+    }
+
+    @Test
+    public void test_rotating_keys_reencrypts_payloads_with_the_active_key() throws Exception {
+        OAuthEncryptionService oldService = new OAuthEncryptionService(KEY);
+
+        List<EncryptedOAuthTokens> stored = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            stored.add(oldService.encrypt(oauth2Tokens("access" + i, "refresh" + i)));
+        }
+
+        Map<String, String> keys = new HashMap<>();
+        keys.put(OAuthEncryptionService.DEFAULT_KEY_ID, KEY);
+        keys.put("next", "fedcba9876543210fedcba9876543210");
+        OAuthEncryptionService service = new OAuthEncryptionService(keys, "next", OAuthCipherSuite.AES_GCM);
+
+        List<EncryptedOAuthTokens> saved = Collections.synchronizedList(new ArrayList<>());
+        OAuthKeyRotation.Progress progress = new OAuthKeyRotation(service, 4, 10).rotate(stored.iterator(), saved::add, null);
+
+        assertEquals(100, progress.getProcessed());
+        assertEquals(100, progress.getReencrypted());
+        assertEquals(100, saved.size());
+
+        OAuthEncryptionService newService = new OAuthEncryptionService(Collections.singletonMap("next",
+                "fedcba9876543210fedcba9876543210"), "next", OAuthCipherSuite.AES_GCM);
+        for (int i = 0; i < stored.size(); i++) {
+            assertEquals("access" + i, newService.decrypt(stored.get(i)).getAccessToken());
+        }
+
+        progress = new OAuthKeyRotation(service, 4).rotate(stored.iterator(), saved::add, null);
+        assertEquals(100, progress.getSkipped());
+    }
+
+    @Test
+    public void test_legacy_ecb_payloads_are_decrypted() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "AES"));
+
+        EncryptedOAuthTokens legacy = new EncryptedOAuthTokens();
+        legacy.setPayload(Base64.encodeBase64String(cipher.doFinal("access:secret".getBytes(StandardCharsets.UTF_8))));
+
+        OAuth1Tokens decrypted = new OAuthEncryptionService(KEY).decryptOAuth1(legacy);
+        assertEquals("access", decrypted.getAccessToken());
+        assertEquals("secret", decrypted.getAccessTokenSecret());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void test_legacy_payloads_are_decoded_leniently_and_returned_as_plaintext() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "AES"));
+
+        String encoded = Base64.encodeBase64String(cipher.doFinal("access:secret:more".getBytes(StandardCharsets.UTF_8)));
+        String legacy = encoded.substring(0, 10) + "\r\n" + StringUtils.stripEnd(encoded.substring(10), "=");
+
+        OAuthEncryptionService service = new OAuthEncryptionService(KEY);
+        assertEquals("access:secret:more", service.decrypt(legacy));
+        assertNull(service.decryptSecrets(legacy));
+
+        String current = service.encrypt(oauth2Tokens("access", "refresh")).getPayload();
+        assertEquals("access:refresh", service.decrypt(current));
+        assertArrayEquals(new String[] {"access", "refresh"}, service.decryptSecrets(current));
+    }
+
+    @Test
+    public void test_v1_payloads_without_key_id_are_decrypted_with_the_default_key() throws Exception {
+        byte[] payload = new byte[1 + 12];
+        payload[0] = OAuthCipherSuite.AES_GCM.getId();
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "AES"),
+                new GCMParameterSpec(128, payload, 1, 12));
+        cipher.updateAAD(payload, 0, 1);
+        byte[] ciphertext = cipher.doFinal("access:refresh".getBytes(StandardCharsets.UTF_8));
+
+        EncryptedOAuthTokens v1 = new EncryptedOAuthTokens();
+        v1.setPayload(OAuthEncryptionService.PAYLOAD_PREFIX_V1 + new String(Base64.encodeBase64Chunked(ArrayUtils.addAll(payload, ciphertext)), StandardCharsets.US_ASCII));
+
+        OAuth2Tokens decrypted = new OAuthEncryptionService(KEY).decrypt(v1);
+        assertEquals("access", decrypted.getAccessToken());
+        assertEquals("refresh", decrypted.getRefreshToken());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void test_tampered_payloads_are_rejected() {
+        OAuthEncryptionService service = new OAuthEncryptionService(KEY);
+
+        EncryptedOAuthTokens encrypted = service.encrypt(oauth2Tokens("access", "refresh"));
+
+        byte[] bytes = Base64.decodeBase64(encrypted.getPayload().substring(OAuthEncryptionService.PAYLOAD_PREFIX.length()));
+        bytes[bytes.length - 1] ^= 1;
+        encrypted.setPayload(OAuthEncryptionService.PAYLOAD_PREFIX + Base64.encodeBase64String(bytes));
+
+        service.decrypt(encrypted);
+    }
+
+    private static OAuth2Tokens oauth2Tokens(String accessToken, String refreshToken) {
+        OAuth2Tokens tokens = new OAuth2Tokens();
+        tokens.setAccessToken(accessToken);
+        tokens.setRefreshToken(refreshToken);
+        return tokens;
+    }
+}
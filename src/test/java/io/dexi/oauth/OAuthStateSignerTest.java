@@ -0,0 +1,58 @@
+package io.dexi.oauth;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class OAuthStateSignerTest {
+
+    private final OAuthStateSigner signer = new OAuthStateSigner("a-signing-key-of-some-length", 10, TimeUnit.MINUTES);
+
+    @Test
+    public void test_signed_state_can_be_verified() {
+        String token = signer.sign("https://app.dexi.io/#/apps/return?x=1", "activation-id");
+
+        OAuthStateSigner.State state = signer.verify(token);
+        assertEquals("https://app.dexi.io/#/apps/return?x=1", state.getReturnUrl());
+        assertEquals("activation-id", state.getActivationId());
+    }
+
+    @Test
+    public void test_tampered_or_foreign_state_is_rejected() {
+        String token = signer.sign("https://app.dexi.io/", "activation-id");
+
+        char first = token.charAt(0);
+        assertNull(signer.verify((first == 'A' ? 'B' : 'A') + token.substring(1)));
+        assertNull(signer.verify("not-a-state"));
+        assertNull(new OAuthStateSigner("another-signing-key-of-length", 10, TimeUnit.MINUTES).verify(token));
+    }
+
+    @Test
+    public void test_expired_state_is_rejected() {
+        OAuthStateSigner expiring = new OAuthStateSigner("a-signing-key-of-some-length", 0, TimeUnit.SECONDS);
+
+        String token = expiring.sign("https://app.dexi.io/", "activation-id");
+
+        assertNull(new OAuthStateSigner("a-signing-key-of-some-length", -1, TimeUnit.SECONDS).verify(token));
+    }
+
+    @Test
+    public void test_state_for_another_activation_is_rejected() {
+        String token = signer.sign("https://app.dexi.io/", "activation-id");
+
+        assertEquals("activation-id", signer.verify(token, "activation-id").getActivationId());
+        assertNull(signer.verify(token, "other-activation-id"));
+    }
+
+    @Test
+    public void test_each_token_has_its_own_nonce() {
+        OAuthStateSigner.State first = signer.verify(signer.sign("https://app.dexi.io/", "activation-id"));
+        OAuthStateSigner.State second = signer.verify(signer.sign("https://app.dexi.io/", "activation-id"));
+
+        assertFalse(first.getNonce() == second.getNonce());
+    }
+}
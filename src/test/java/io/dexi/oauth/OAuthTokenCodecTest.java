@@ -0,0 +1,57 @@
+package io.dexi.oauth;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class OAuthTokenCodecTest {
+
+    @Test
+    public void test_legacy_plaintext_is_decoded_like_split() {
+        String[] plaintexts = {
+                "a:b", "a:b:", "a:b::", ":b", ":b:", "a:", "a::", "a::b", "a:b:c", "a:b:c:", ":", "::", "", "ab",
+                "æø:å:"
+        };
+
+        for (String plaintext : plaintexts) {
+            String[] parts = plaintext.split(":");
+            String[] expected = parts.length == 2 ? parts : null;
+
+            String[] decoded = OAuthTokenCodec.decode(plaintext.getBytes(StandardCharsets.UTF_8));
+            assertEquals(plaintext, Arrays.toString(expected), Arrays.toString(decoded));
+        }
+    }
+
+    @Test
+    public void test_trailing_separators_are_ignored() {
+        assertArrayEquals(new String[]{"a", "b"}, OAuthTokenCodec.decode("a:b:".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new String[]{"", "b"}, OAuthTokenCodec.decode(":b::".getBytes(StandardCharsets.UTF_8)));
+        assertNull(OAuthTokenCodec.decode("a:".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void test_binary_round_trip() {
+        assertArrayEquals(new String[]{"a:b:", null}, OAuthTokenCodec.decode(OAuthTokenCodec.encode("a:b:", null)));
+    }
+
+    @Test
+    public void test_malformed_binary_lengths_are_rejected() {
+        byte[][] payloads = {
+                {0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 'a'},
+                {0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08, 'a'},
+                {0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10, 'a'},
+                {0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01},
+                {0, 0x05, 'a'},
+                {0, (byte) 0x80}
+        };
+
+        for (byte[] payload : payloads) {
+            assertNull(Arrays.toString(payload), OAuthTokenCodec.decode(payload));
+        }
+    }
+}
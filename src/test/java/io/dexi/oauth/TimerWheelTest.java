@@ -0,0 +1,55 @@
+package io.dexi.oauth;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimerWheelTest {
+
+    private final TimerWheel timer = new TimerWheel("timer-wheel-test", 10, TimeUnit.MILLISECONDS, 8,
+            MoreExecutors.directExecutor());
+
+    @After
+    public void tearDown() {
+        timer.close();
+    }
+
+    private long runAfter(long delayMillis) throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.schedule(ran::countDown, delayMillis, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    public void test_timeout_runs_after_delay() throws Exception {
+        long elapsed = runAfter(50);
+        assertTrue("Ran after " + elapsed + "ms", elapsed >= 40);
+    }
+
+    @Test
+    public void test_timeout_beyond_one_round_runs_after_delay() throws Exception {
+        // The wheel covers 80ms
+        long elapsed = runAfter(200);
+        assertTrue("Ran after " + elapsed + "ms", elapsed >= 190);
+    }
+
+    @Test
+    public void test_cancelled_timeout_does_not_run() throws Exception {
+        AtomicBoolean ran = new AtomicBoolean();
+        timer.schedule(() -> ran.set(true), 30, TimeUnit.MILLISECONDS).cancel();
+
+        // Runs after the cancelled one - so the cancelled one had its chance
+        runAfter(60);
+        assertFalse(ran.get());
+    }
+}
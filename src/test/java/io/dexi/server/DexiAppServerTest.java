@@ -0,0 +1,215 @@
+package io.dexi.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dexi.service.DexiPayloadHeaders;
+import io.dexi.service.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DexiAppServerTest {
+
+    private DexiAppServer server;
+
+    private final CountDownLatch processing = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private final List<Thread> requestThreads = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        server = new DexiAppServer(0)
+                .setExecutor(Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    requestThreads.add(thread);
+                    return thread;
+                }))
+                .onDynamicSchema("/schema", Map.class, (request, config) -> {
+                    Schema schema = new Schema();
+                    Schema.Field field = new Schema.Field();
+                    field.setType((String) config.getOptions().get("type"));
+                    schema.put(request.getComponent(), field);
+                    return schema;
+                })
+                .onPayload("/validate", Map.class, (request, config) -> {
+                    if (!config.containsKey("url")) {
+                        throw new DexiAppException(400, "url is required");
+                    }
+                    return null;
+                })
+                .onRows("/filter", Map.class, 2, 1, (request, config, rows, output) -> {
+                    for (JsonNode row : rows) {
+                        if (row.get("value").asInt() > (Integer) config.get("min")) {
+                            output.write(row);
+                        }
+                    }
+                })
+                .onRows("/failing", Map.class, 1, 1, (request, config, rows, output) -> {
+                    if (rows.get(0).get("fail").asBoolean()) {
+                        throw new IllegalStateException("Processor failed");
+                    }
+                    output.write(rows.get(0));
+                })
+                .onRows("/slow", Map.class, 1, 1, (request, config, rows, output) -> {
+                    batches.incrementAndGet();
+                    processing.countDown();
+                    assertTrue(release.await(10, TimeUnit.SECONDS));
+                })
+                .start();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        server.close();
+    }
+
+    private HttpURLConnection post(String path, String body) throws Exception {
+        return post(path, body, null);
+    }
+
+    private HttpURLConnection post(String path, String body, String config) throws Exception {
+        InetSocketAddress address = server.getAddress();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + address.getPort() + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("X-DexiIO-Component", "my-component");
+        if (config != null) {
+            connection.setRequestProperty(DexiPayloadHeaders.CONFIGURATION, config);
+        }
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    private static String read(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void test_dynamic_schema_is_returned_as_json() throws Exception {
+        HttpURLConnection connection = post("/schema", "{\"options\":{\"type\":\"string\"}}");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("string", new ObjectMapper()
+                .readTree(read(connection.getInputStream())).get("my-component").get("type").asText());
+    }
+
+    @Test
+    public void test_rows_are_processed_in_batches_and_streamed_back() throws Exception {
+        HttpURLConnection connection = post("/filter", "[{\"value\":1},{\"value\":5},{\"value\":3},{\"value\":7},{\"value\":2}]", "{\"min\":2}");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("[{\"value\":5},{\"value\":3},{\"value\":7}]", read(connection.getInputStream()));
+
+        assertEquals(204, post("/filter", "[]", "{\"min\":2}").getResponseCode());
+        assertEquals(400, post("/filter", "[{\"value\":1},", "{\"min\":2}").getResponseCode());
+    }
+
+    @Test
+    public void test_errors_are_returned_in_dexi_format() throws Exception {
+        assertEquals(204, post("/validate", "{\"url\":\"https://dexi.io\"}").getResponseCode());
+
+        HttpURLConnection invalid = post("/validate", "{}");
+        assertEquals(400, invalid.getResponseCode());
+        assertEquals("{\"error\":true,\"msg\":\"url is required\",\"code\":400}", read(invalid.getErrorStream()));
+
+        assertEquals(400, post("/validate", "{not json").getResponseCode());
+    }
+
+    @Test
+    public void test_processor_failure_before_output_returns_error() throws Exception {
+        HttpURLConnection connection = post("/failing", "[{\"fail\":true}]");
+
+        assertEquals(500, connection.getResponseCode());
+        assertEquals("{\"error\":true,\"msg\":\"Internal error\",\"code\":500}", read(connection.getErrorStream()));
+    }
+
+    @Test
+    public void test_processor_failure_after_output_drops_connection() throws Exception {
+        HttpURLConnection connection = post("/failing", "[{\"fail\":false},{\"fail\":true}]");
+
+        assertEquals(200, connection.getResponseCode());
+        try {
+            read(connection.getInputStream());
+            fail("Expected the response to be cut off");
+        } catch (IOException e) {
+            // The response was not ended - so the failure is visible
+        }
+    }
+
+    @Test
+    public void test_reading_rows_waits_for_processor() throws Exception {
+        Thread client = new Thread(() -> {
+            try {
+                post("/slow", "[{\"a\":1},{\"a\":2},{\"a\":3},{\"a\":4},{\"a\":5}]").getResponseCode();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        client.start();
+
+        assertTrue(processing.await(10, TimeUnit.SECONDS));
+
+        // One batch processing, one buffered - the request thread waits before reading a third
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!isWaitingForProcessor()) {
+            assertTrue("Request thread did not wait for the processor", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        assertEquals(1, batches.get());
+
+        release.countDown();
+        client.join(10000);
+        assertEquals(5, batches.get());
+    }
+
+    private boolean isWaitingForProcessor() {
+        for (Thread thread : requestThreads) {
+            if (thread.getState() != Thread.State.WAITING) {
+                continue;
+            }
+            for (StackTraceElement element : thread.getStackTrace()) {
+                if (element.getClassName().equals(Semaphore.class.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
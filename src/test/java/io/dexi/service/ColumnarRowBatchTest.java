@@ -0,0 +1,126 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarRowBatchTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static Schema.Field field(String type) {
+        Schema.Field field = new Schema.Field();
+        field.setType(type);
+        return field;
+    }
+
+    @Test
+    public void test_rows_are_stored_by_column_and_streamed_back() throws Exception {
+        Schema schema = new Schema();
+        schema.put("category", field("string"));
+        schema.put("price", field("number"));
+        schema.put("inStock", field("boolean"));
+        schema.put("meta", field("object"));
+
+        ColumnarRowBatch batch = new ColumnarRowBatch(schema, 1);
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"category\":\"c").append(i % 3).append("\",\"price\":").append(i)
+                    .append(",\"inStock\":").append(i % 2 == 0)
+                    .append(i == 5 ? ",\"meta\":{\"a\":1}" : "").append('}');
+        }
+        json.append(']');
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(json.toString())) {
+            assertEquals(100, batch.appendRows(parser));
+        }
+        assertEquals(100, batch.size());
+
+        int price = batch.indexOf("price");
+        double total = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            total += batch.getDouble(price, i);
+        }
+        assertEquals(4950, total, 0);
+
+        int category = batch.indexOf("category");
+        assertEquals("c2", batch.getString(category, 5));
+        assertTrue(batch.getBoolean(batch.indexOf("inStock"), 4));
+        assertEquals(1, batch.getNode(batch.indexOf("meta"), 5).get("a").asInt());
+        assertTrue(batch.isNull(batch.indexOf("meta"), 4));
+
+        ColumnarRowBatch projected = batch.project("price", "category");
+        assertEquals(-1, projected.indexOf("meta"));
+
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            projected.writeRows(generator);
+        }
+        assertTrue(out.toString().startsWith("[{\"category\":\"c0\",\"price\":0.0},{\"category\":\"c1\",\"price\":1.0}"));
+
+        int rows = 0;
+        for (SchemaRowCodec.Row row : projected) {
+            assertFalse(row.isNull(projected.indexOf("price")));
+            rows++;
+        }
+        assertEquals(100, rows);
+
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertNull(batch.getCodec().newRow().get(category));
+    }
+
+    @Test
+    public void test_clear_starts_a_new_dictionary() throws Exception {
+        Schema schema = new Schema();
+        schema.put("category", field("string"));
+
+        ColumnarRowBatch batch = new ColumnarRowBatch(schema);
+        int category = batch.indexOf("category");
+
+        batch.appendRows(objectMapper.getFactory().createParser("[{\"category\":\"a\"},{\"category\":\"b\"}]"));
+        assertEquals(2, batch.getDictionarySize(category));
+
+        batch.clear();
+        batch.appendRows(objectMapper.getFactory().createParser("[{\"category\":\"c\"},{\"category\":\"c\"}]"));
+        assertEquals(1, batch.getDictionarySize(category));
+        assertEquals("c", batch.getString(category, 1));
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i <= 1 << 16; i++) {
+            json.append(i > 0 ? "," : "").append("{\"category\":\"c").append(i).append("\"}");
+        }
+        batch.clear();
+        batch.appendRows(objectMapper.getFactory().createParser(json.append(']').toString()));
+        assertEquals(-1, batch.getDictionarySize(category));
+
+        batch.clear();
+        batch.appendRows(objectMapper.getFactory().createParser("[{\"category\":\"d\"}]"));
+        assertEquals(1, batch.getDictionarySize(category));
+        assertEquals("d", batch.getString(category, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_primitive_getters_check_the_column_type() throws Exception {
+        Schema schema = new Schema();
+        schema.put("price", field("number"));
+
+        ColumnarRowBatch batch = new ColumnarRowBatch(schema);
+        batch.appendRows(objectMapper.getFactory().createParser("[{\"price\":2.5}]"));
+        assertEquals(2.5, batch.getDouble(batch.indexOf("price"), 0), 0);
+
+        batch.getLong(batch.indexOf("price"), 0);
+    }
+}
@@ -0,0 +1,123 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DynamicSchemaCacheTest {
+
+    private static final String SCHEMA = "{\"name\":{\"type\":\"string\"}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final DynamicSchemaCache<Map<String, Object>> cache = new DynamicSchemaCache<>(objectMapper, 100, 1, TimeUnit.HOURS);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final DynamicSchemaCache.SchemaLoader<Map<String, Object>> loader = config -> {
+        loads.incrementAndGet();
+        return objectMapper.readValue(SCHEMA, Schema.class);
+    };
+
+    private DynamicSchemaConfig<Map<String, Object>> config(String json) throws IOException {
+        return objectMapper.readValue(json, new TypeReference<DynamicSchemaConfig<Map<String, Object>>>() {});
+    }
+
+    @Test
+    public void test_order_of_option_fields_does_not_matter() throws Exception {
+        Schema first = cache.get(config("{\"options\":{\"a\":1,\"b\":{\"c\":\"x\",\"d\":true}}}"), loader);
+        Schema second = cache.get(config("{\"options\":{\"b\":{\"d\":true,\"c\":\"x\"},\"a\":1}}"), loader);
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void test_different_input_schemas_are_cached_separately() throws Exception {
+        cache.get(config("{\"options\":{\"a\":1},\"inputConnectionSchema\":{\"x\":{\"type\":\"string\"}}}"), loader);
+        cache.get(config("{\"options\":{\"a\":1},\"inputConnectionSchema\":{\"x\":{\"type\":\"integer\"}}}"), loader);
+        cache.get(config("{\"options\":{\"a\":1},\"inputConnectionSchema\":{\"x\":{\"type\":\"string\"}}}"), loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void test_concurrent_requests_load_once() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final DynamicSchemaCache.SchemaLoader<Map<String, Object>> slow = config -> {
+            loading.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return loader.load(config);
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<Schema> first = executor.submit(() -> cache.get(config("{\"options\":{\"a\":1}}"), slow));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+            final Future<Schema> second = executor.submit(() -> cache.get(config("{\"options\":{\"a\":1}}"), slow));
+            final Future<Schema> third = executor.submit(() -> cache.get(config("{\"options\":{\"a\":1}}"), slow));
+            release.countDown();
+
+            assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+            assertSame(first.get(), third.get(10, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_loader_exceptions_are_propagated() throws Exception {
+        final IllegalArgumentException unchecked = new IllegalArgumentException("bad options");
+        try {
+            cache.get(config("{\"options\":{\"a\":1}}"), config -> {
+                throw unchecked;
+            });
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertSame(unchecked, e);
+        }
+
+        final IOException checked = new IOException("unavailable");
+        try {
+            cache.get(config("{\"options\":{\"a\":1}}"), config -> {
+                throw checked;
+            });
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            assertSame(checked, e.getCause());
+        }
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_null_schema_is_rejected() throws Exception {
+        cache.get(config("{\"options\":{\"a\":1}}"), config -> null);
+    }
+
+    @Test
+    public void test_cached_schema_is_interned() throws Exception {
+        Schema schema = cache.get(config("{}"), loader);
+
+        assertTrue(SchemaInterner.isInterned(schema));
+    }
+}
@@ -0,0 +1,67 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaInternerTest {
+
+    private static final String SCHEMA = "{\"name\":{\"type\":\"string\",\"required\":true,\"dependsOn\":[\"a\",\"b\"]}," +
+            "\"address\":{\"type\":\"object\",\"properties\":{\"city\":{\"type\":\"string\",\"options\":{\"x\":1}}}}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void test_equal_schemas_are_interned_to_same_instance() throws Exception {
+        Schema first = objectMapper.readValue(SCHEMA, Schema.class);
+        Schema second = objectMapper.readValue(SCHEMA, Schema.class);
+        assertNotSame(first, second);
+
+        Schema interned = SchemaInterner.intern(first);
+        assertSame(interned, SchemaInterner.intern(second));
+        assertSame(interned, SchemaInterner.intern(interned));
+        assertTrue(SchemaInterner.isInterned(interned));
+        assertEquals(first.keySet(), interned.keySet());
+        assertEquals("string", interned.get("name").getType());
+        assertSame(SchemaInterner.intern(first.get("address").getProperties()), interned.get("address").getProperties());
+
+        second.get("name").setRequired(false);
+        Schema changed = SchemaInterner.intern(second);
+        assertNotSame(interned, changed);
+        assertSame(interned.get("address"), changed.get("address"));
+        assertSame(interned.get("name").getDependsOn(), changed.get("name").getDependsOn());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void test_interned_schema_can_not_be_modified() throws Exception {
+        Schema interned = SchemaInterner.intern(objectMapper.readValue(SCHEMA, Schema.class));
+        interned.get("name").setType("integer");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void test_interned_schema_entries_can_not_be_removed() throws Exception {
+        Schema interned = SchemaInterner.intern(objectMapper.readValue(SCHEMA, Schema.class));
+        interned.keySet().remove("name");
+    }
+
+    @Test
+    public void test_interned_and_regular_schemas_are_equal_both_ways() throws Exception {
+        Schema schema = objectMapper.readValue(SCHEMA, Schema.class);
+        Schema interned = SchemaInterner.intern(objectMapper.readValue(SCHEMA, Schema.class));
+
+        assertEquals(schema, interned);
+        assertEquals(interned, schema);
+        assertEquals(schema.hashCode(), interned.hashCode());
+        assertEquals(schema.get("address"), interned.get("address"));
+        assertEquals(interned.get("address"), schema.get("address"));
+
+        schema.get("name").setRequired(false);
+        assertFalse(schema.equals(interned));
+        assertFalse(interned.equals(schema));
+    }
+}
@@ -0,0 +1,111 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SchemaRowCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static Schema.Field field(String type) {
+        Schema.Field field = new Schema.Field();
+        field.setType(type);
+        return field;
+    }
+
+    @Test
+    public void test_rows_are_read_into_indexed_slots_and_written_back() throws Exception {
+        Schema schema = new Schema();
+        schema.put("id", field("integer"));
+        schema.put("price", field("number"));
+        schema.put("available", field("boolean"));
+        schema.put("name", field("string"));
+        schema.put("tags", field("array"));
+
+        SchemaRowCodec codec = SchemaRowCodec.forSchema(schema);
+        int id = codec.indexOf("id");
+        int price = codec.indexOf("price");
+        int available = codec.indexOf("available");
+        int name = codec.indexOf("name");
+
+        String json = "[{\"id\":1,\"price\":2.5,\"available\":true,\"name\":\"a\",\"tags\":[\"x\"],\"other\":{}}," +
+                "{\"id\":\"2\",\"name\":null}]";
+
+        StringWriter out = new StringWriter();
+        try (JsonParser parser = objectMapper.getFactory().createParser(json);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            SchemaRowCodec.Row row = codec.newRow();
+            generator.writeStartArray();
+
+            assertTrue(codec.read(parser, row));
+            assertEquals(1L, row.getLong(id));
+            assertEquals(2.5, row.getDouble(price), 0);
+            assertTrue(row.getBoolean(available));
+            assertEquals("a", row.getString(name));
+            codec.write(generator, row);
+
+            assertTrue(codec.read(parser, row));
+            assertEquals(2L, row.getLong(id));
+            assertTrue(row.isNull(name));
+            assertTrue(row.isNull(price));
+            assertNull(row.get(available));
+            codec.write(generator, row);
+
+            assertFalse(codec.read(parser, row));
+            generator.writeEndArray();
+        }
+
+        assertEquals("[{\"available\":true,\"id\":1,\"name\":\"a\",\"price\":2.5,\"tags\":[\"x\"]},{\"id\":2}]", out.toString());
+    }
+
+    @Test
+    public void test_parsers_and_generators_without_codec_are_supported() throws Exception {
+        Schema schema = new Schema();
+        schema.put("id", field("integer"));
+        schema.put("tags", field("array"));
+
+        SchemaRowCodec codec = SchemaRowCodec.forSchema(schema);
+        JsonFactory factory = new JsonFactory();
+
+        StringWriter out = new StringWriter();
+        try (JsonParser parser = factory.createParser("{\"id\":1,\"tags\":[\"x\",{\"y\":2}]}");
+             JsonGenerator generator = factory.createGenerator(out)) {
+            SchemaRowCodec.Row row = codec.read(parser);
+            assertEquals("x", row.getNode(codec.indexOf("tags")).get(0).asText());
+            codec.write(generator, row);
+        }
+
+        assertEquals("{\"id\":1,\"tags\":[\"x\",{\"y\":2}]}", out.toString());
+    }
+
+    @Test
+    public void test_booleans_from_strings_must_be_true_or_false() throws Exception {
+        Schema schema = new Schema();
+        schema.put("available", field("boolean"));
+
+        SchemaRowCodec codec = SchemaRowCodec.forSchema(schema);
+        int available = codec.indexOf("available");
+
+        assertTrue(codec.read(objectMapper.getFactory().createParser("{\"available\":\"true\"}")).getBoolean(available));
+        assertFalse(codec.read(objectMapper.getFactory().createParser("{\"available\":\"false\"}")).getBoolean(available));
+
+        try {
+            codec.read(objectMapper.getFactory().createParser("{\"available\":\"yes\"}"));
+            fail("Expected invalid boolean to be rejected");
+        } catch (JsonParseException e) {
+            assertTrue(e.getMessage().contains("Invalid boolean for field available"));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.dexi.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaValidatorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static Schema.Field field(String type, boolean required) {
+        Schema.Field field = new Schema.Field();
+        field.setType(type);
+        field.setRequired(required);
+        return field;
+    }
+
+    private Schema schema() {
+        Schema address = new Schema();
+        address.put("city", field("string", true));
+        Schema.Field lines = field("array", false);
+        lines.setItems(field("string", false));
+        address.put("lines", lines);
+
+        Schema schema = new Schema();
+        schema.put("name", field("string", true));
+        schema.put("age", field("integer", false));
+        Schema.Field addressField = field("object", false);
+        addressField.setProperties(address);
+        schema.put("address", addressField);
+        return schema;
+    }
+
+    @Test
+    public void test_valid_row_has_no_violations() throws Exception {
+        SchemaValidator validator = SchemaValidator.forSchema(schema());
+
+        assertTrue(validator.validate(objectMapper.readTree(
+                "{\"name\":\"a\",\"age\":4,\"unknown\":{\"x\":[1]},\"address\":{\"city\":\"b\",\"lines\":[\"c\",null]}}")).isEmpty());
+    }
+
+    @Test
+    public void test_all_violations_are_reported_with_paths() throws Exception {
+        SchemaValidator validator = SchemaValidator.compile(schema());
+
+        List<SchemaValidator.Violation> violations = validator.validate(objectMapper.readTree(
+                "{\"name\":null,\"age\":4.5,\"address\":{\"lines\":[\"c\",2]}}"));
+
+        List<String> messages = new ArrayList<>();
+        for (SchemaValidator.Violation violation : violations) {
+            messages.add(violation.toString());
+        }
+
+        assertEquals(4, messages.size());
+        assertTrue(messages.contains("age must be integer but was number"));
+        assertTrue(messages.contains("address.lines[1] must be string but was integer"));
+        assertTrue(messages.contains("address.city is required"));
+        assertTrue(messages.contains("name is required"));
+    }
+
+    @Test
+    public void test_consecutive_rows_are_validated_from_one_parser() throws Exception {
+        SchemaValidator validator = SchemaValidator.compile(schema());
+
+        try (JsonParser parser = objectMapper.getFactory().createParser("[{\"name\":\"a\"},{\"age\":\"x\"},{\"name\":\"c\"}]")) {
+            assertTrue(validator.validate(parser).isEmpty());
+            assertEquals(2, validator.validate(parser).size());
+            assertTrue(validator.validate(parser).isEmpty());
+        }
+    }
+
+    @Test
+    public void test_properties_of_untyped_fields_are_validated() throws Exception {
+        Schema nested = new Schema();
+        nested.put("city", field("string", true));
+        Schema.Field address = field(null, false);
+        address.setProperties(nested);
+        Schema.Field tags = field(null, false);
+        tags.setItems(field("integer", false));
+
+        Schema schema = new Schema();
+        schema.put("address", address);
+        schema.put("tags", tags);
+
+        List<SchemaValidator.Violation> violations = SchemaValidator.compile(schema).validate(objectMapper.readTree(
+                "{\"address\":{\"city\":1},\"tags\":[\"x\"]}"));
+
+        assertEquals(2, violations.size());
+        assertEquals("address.city must be string but was integer", violations.get(0).toString());
+        assertEquals("tags[0] must be integer but was string", violations.get(1).toString());
+    }
+
+    @Test
+    public void test_rows_are_validated_from_stream() throws Exception {
+        SchemaValidator validator = SchemaValidator.forSchema(schema());
+
+        List<Long> invalidRows = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(
+                "[{\"name\":\"a\"},{\"age\":1},{\"name\":\"b\"},\"row\"]")) {
+            long invalid = validator.validateRows(parser, (index, violations) -> invalidRows.add(index));
+            assertEquals(2, invalid);
+        }
+
+        assertEquals(2, invalidRows.size());
+        assertEquals(1L, (long) invalidRows.get(0));
+        assertEquals(3L, (long) invalidRows.get(1));
+    }
+}